@@ -0,0 +1,83 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+
+package gov.nist.hit.core.hl7v2.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import gov.nist.hit.core.hl7v2.service.HL7V2MessageParser;
+import gov.nist.hit.core.hl7v2.service.HL7V2MessageValidator;
+import gov.nist.hit.core.hl7v2.service.ProfileCache;
+import gov.nist.hit.core.hl7v2.service.ValidationMetrics;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Latency of the validation and parsing stages and state of the validation caches
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+@Api(value = "HL7 V2 Metrics", tags = "HL7 V2 Metrics")
+@RequestMapping("/hl7v2/metrics")
+@RestController
+public class HL7V2MetricsController {
+
+  @Autowired
+  private ValidationMetrics validationMetrics;
+
+  @Autowired
+  private HL7V2MessageValidator messageValidator;
+
+  @Autowired
+  private ProfileCache profileCache;
+
+  @Autowired
+  private HL7V2MessageParser messageParser;
+
+  @ApiOperation(value = "Get the validation and parsing metrics", nickname = "getMetrics")
+  @RequestMapping(value = "", method = RequestMethod.GET, produces = "application/json")
+  public Map<String, Object> metrics() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put("stages", validationMetrics.getStages());
+    metrics.put("caches", caches());
+    metrics.put("validationLog", messageValidator.getValidationLogStatistics());
+    metrics.put("executor", messageValidator.getValidationExecutorStatistics());
+    return metrics;
+  }
+
+  @ApiOperation(value = "Reset the stage metrics", nickname = "resetMetrics")
+  @RequestMapping(value = "/reset", method = RequestMethod.POST)
+  public void reset() {
+    validationMetrics.reset();
+  }
+
+  protected List<CacheStatistics> caches() {
+    List<CacheStatistics> caches = new ArrayList<CacheStatistics>();
+    caches.add(messageValidator.getValidationContextCacheStatistics());
+    caches.add(messageValidator.getReportStore().getStatistics());
+    caches.add(messageValidator.getResultCacheStatistics());
+    caches.add(profileCache.getStatistics());
+    caches.add(messageParser.getParsedMessageCache().getStatistics());
+    return caches;
+  }
+
+}
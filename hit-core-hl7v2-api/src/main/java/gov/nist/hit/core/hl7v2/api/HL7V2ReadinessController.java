@@ -0,0 +1,48 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import gov.nist.hit.core.hl7v2.service.ValidationWarmup;
+import gov.nist.hit.core.hl7v2.service.WarmupStatus;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Readiness of the instance for load balancers: 200 once the warm-up is over, 503 before
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+@Api(value = "HL7 V2 Readiness", tags = "HL7 V2 Readiness")
+@RequestMapping("/hl7v2/readiness")
+@RestController
+public class HL7V2ReadinessController {
+
+  @Autowired
+  private ValidationWarmup validationWarmup;
+
+  @ApiOperation(value = "Get the progress of the warm-up", nickname = "getReadiness")
+  @RequestMapping(value = "", method = RequestMethod.GET, produces = "application/json")
+  public ResponseEntity<WarmupStatus> readiness() {
+    WarmupStatus status = validationWarmup.getStatus();
+    return new ResponseEntity<WarmupStatus>(status,
+        status.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+}
@@ -12,20 +12,68 @@
 
 package gov.nist.hit.core.hl7v2.api;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gov.nist.hit.core.api.SessionContext;
 import gov.nist.hit.core.api.TestContextController;
+import gov.nist.hit.core.domain.MessageParserCommand;
+import gov.nist.hit.core.domain.MessageValidationResult;
 import gov.nist.hit.core.domain.TestContext;
+import gov.nist.hit.core.hl7v2.domain.BatchParseResult;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationCommand;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationItem;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationResult;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationSummary;
+import gov.nist.hit.core.hl7v2.domain.CompactMessageModel;
+import gov.nist.hit.core.hl7v2.domain.CompactMessageNode;
+import gov.nist.hit.core.hl7v2.domain.HL7V2MessageValidationCommand;
+import gov.nist.hit.core.hl7v2.domain.LazyMessageModel;
+import gov.nist.hit.core.hl7v2.domain.MessageSegment;
+import gov.nist.hit.core.hl7v2.domain.ProfileDetectionResult;
 import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.BatchValidationListener;
 import gov.nist.hit.core.hl7v2.service.HL7V2MessageParser;
 import gov.nist.hit.core.hl7v2.service.HL7V2MessageValidator;
+import gov.nist.hit.core.hl7v2.service.HL7V2Util;
 import gov.nist.hit.core.hl7v2.service.HL7V2ValidationReportConverter;
+import gov.nist.hit.core.hl7v2.service.ProfileIndex;
+import gov.nist.hit.core.hl7v2.service.ValidationReportHandle;
+import gov.nist.hit.core.hl7v2.service.exception.ValidationRejectedException;
+import gov.nist.hit.core.hl7v2.service.exception.ValidationTimeoutException;
 import gov.nist.hit.core.service.ValidationReportConverter;
+import gov.nist.hit.core.service.exception.MessageParserException;
+import gov.nist.hit.core.service.exception.MessageValidationException;
 import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 
 /**
  * @author Harold Affo (NIST)
@@ -50,12 +98,321 @@ public class HL7V2TestContextController extends TestContextController {
   @Autowired
   private HL7V2ValidationReportConverter validationReportConverter;
 
+  @Autowired
+  private ProfileIndex profileIndex;
+
   @Override
   public TestContext getTestContext(Long testContextId) {
     logger.info("Fetching testContext with id=" + testContextId);
     return testContextRepository.findOne(testContextId);
   }
 
+  @ApiOperation(value = "Validate several messages against a test context",
+      nickname = "validateMessages")
+  @RequestMapping(value = "/{testContextId}/validateMessages", method = RequestMethod.POST,
+      consumes = "application/json", produces = "application/json")
+  public BatchValidationResult validateMessages(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @ApiParam(value = "the messages and validation options",
+          required = true) @RequestBody final BatchValidationCommand command,
+      HttpServletRequest request) throws MessageValidationException {
+    logger.info("Validating " + (command.getMessages() != null ? command.getMessages().size() : 0)
+        + " messages with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageValidationException("No test context found with id=" + testContextId);
+    }
+    command.setUserId(SessionContext.getCurrentUserId(request.getSession(false)));
+    return messageValidator.validateBatch(testContext, command);
+  }
+
+  @ApiOperation(
+      value = "Validate an HL7 v2 batch file against a test context, streaming one json result per line",
+      nickname = "validateBatchFile")
+  @RequestMapping(value = "/{testContextId}/validateBatchFile", method = RequestMethod.POST,
+      consumes = {"text/plain", "application/octet-stream"})
+  public void validateBatchFile(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @RequestParam(value = "contextType", defaultValue = "Free") final String contextType,
+      @RequestParam(value = "parallelism", required = false) final Integer parallelism,
+      @RequestParam(value = "timeoutMillis", required = false) final Long timeoutMillis,
+      @RequestParam(value = "errorsOnly", defaultValue = "false") final boolean errorsOnly,
+      @RequestParam(value = "maxErrors", required = false) final Integer maxErrors,
+      HttpServletRequest request, HttpServletResponse response) throws Exception {
+    logger.info("Validating batch file with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageValidationException("No test context found with id=" + testContextId);
+    }
+    BatchValidationCommand command = new BatchValidationCommand();
+    command.setContextType(contextType);
+    command.setParallelism(parallelism);
+    command.setTimeoutMillis(timeoutMillis);
+    command.setUserId(SessionContext.getCurrentUserId(request.getSession(false)));
+    command.setErrorsOnly(errorsOnly);
+    command.setMaxErrors(maxErrors);
+    response.setContentType("application/x-ndjson");
+    response.setCharacterEncoding("UTF-8");
+    final ObjectMapper mapper = new ObjectMapper();
+    final Writer out = response.getWriter();
+    BatchValidationSummary summary =
+        messageValidator.validateStream(testContext, new InputStreamReader(request.getInputStream(),
+            StandardCharsets.UTF_8), command, new BatchValidationListener() {
+              @Override
+              public void onResult(BatchValidationItem item) throws Exception {
+                out.write(mapper.writeValueAsString(item));
+                out.write("\n");
+                out.flush();
+              }
+            });
+    Map<String, Object> last = new HashMap<String, Object>();
+    last.put("summary", summary);
+    out.write(mapper.writeValueAsString(last));
+    out.write("\n");
+    out.flush();
+  }
+
+  @ApiOperation(
+      value = "Validate a message against a test context with the HL7 v2 options: errorsOnly, maxErrors and bypassCache",
+      nickname = "validateMessageWithOptions")
+  @RequestMapping(value = "/{testContextId}/validateMessageWithOptions",
+      method = RequestMethod.POST, consumes = "application/json", produces = "application/json")
+  public MessageValidationResult validateMessageWithOptions(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @ApiParam(value = "the message and validation options",
+          required = true) @RequestBody final HL7V2MessageValidationCommand command,
+      HttpServletRequest request) throws MessageValidationException {
+    logger.info("Validating message with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageValidationException("No test context found with id=" + testContextId);
+    }
+    command.setUserId(SessionContext.getCurrentUserId(request.getSession(false)));
+    return messageValidator.validate(testContext, command);
+  }
+
+  @ApiOperation(
+      value = "Validate a message against a test context without holding a request thread during the validation",
+      nickname = "validateMessageAsync")
+  @RequestMapping(value = "/{testContextId}/validateMessageAsync", method = RequestMethod.POST,
+      consumes = "application/json", produces = "application/json")
+  public DeferredResult<Object> validateMessageAsync(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @ApiParam(value = "the message and validation options",
+          required = true) @RequestBody final HL7V2MessageValidationCommand command)
+      throws MessageValidationException {
+    logger.info("Validating message asynchronously with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageValidationException("No test context found with id=" + testContextId);
+    }
+    long timeout = messageValidator.getValidationTimeoutMillis();
+    final DeferredResult<Object> deferred =
+        timeout > 0 ? new DeferredResult<Object>(timeout + 5000) : new DeferredResult<Object>();
+    messageValidator.validateAsync(testContext, command)
+        .whenComplete(new BiConsumer<MessageValidationResult, Throwable>() {
+          @Override
+          public void accept(MessageValidationResult result, Throwable error) {
+            if (error == null) {
+              deferred.setResult(result);
+              return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            HttpStatus status;
+            if (cause instanceof ValidationRejectedException) {
+              status = HttpStatus.SERVICE_UNAVAILABLE;
+            } else if (cause instanceof ValidationTimeoutException) {
+              status = HttpStatus.GATEWAY_TIMEOUT;
+            } else {
+              status = HttpStatus.INTERNAL_SERVER_ERROR;
+            }
+            deferred.setErrorResult(
+                new ResponseEntity<String>(String.valueOf(cause.getLocalizedMessage()), status));
+          }
+        });
+    return deferred;
+  }
+
+  @ApiOperation(
+      value = "Find the test contexts matching the MSH of a message and optionally validate the message against the best match",
+      nickname = "detectProfile")
+  @RequestMapping(value = "/detectProfile", method = RequestMethod.POST,
+      consumes = "application/json", produces = "application/json")
+  public ProfileDetectionResult detectProfile(
+      @ApiParam(value = "the message", required = true) @RequestBody final HL7V2MessageValidationCommand command,
+      @ApiParam(value = "validate the message against the best match") @RequestParam(
+          value = "validate", defaultValue = "false") final boolean validate)
+      throws MessageValidationException {
+    ProfileDetectionResult result = new ProfileDetectionResult();
+    result.setHeader(HL7V2Util.readMessageHeader(command.getContent()));
+    if (result.getHeader() == null) {
+      throw new MessageValidationException("No MSH segment found in the message");
+    }
+    result.setCandidates(profileIndex.findCandidates(result.getHeader()));
+    logger.info("Found " + result.getCandidates().size() + " test contexts for " + result.getHeader());
+    if (validate && !result.getCandidates().isEmpty()) {
+      TestContext testContext = getTestContext(result.getCandidates().get(0).getTestContextId());
+      if (testContext != null) {
+        result.setValidation(messageValidator.validate(testContext, command));
+      }
+    }
+    return result;
+  }
+
+  @ApiOperation(
+      value = "Parse a message against a test context, in the compact tree form unless compact=false",
+      nickname = "parseMessageTree")
+  @RequestMapping(value = "/{testContextId}/parseMessageTree", method = RequestMethod.POST,
+      consumes = "application/json", produces = "application/json")
+  public Object parseMessageTree(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @ApiParam(value = "the message", required = true) @RequestBody final MessageParserCommand command,
+      @ApiParam(value = "false to get the original tree form") @RequestParam(value = "compact",
+          defaultValue = "true") final boolean compact)
+      throws MessageParserException {
+    logger.info("Parsing message with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageParserException("No test context found with id=" + testContextId);
+    }
+    return compact ? messageParser.parseCompact(testContext, command)
+        : messageParser.parse(testContext, command);
+  }
+
+  @ApiOperation(
+      value = "Parse each message of a multi-message upload against a test context, results in input order",
+      nickname = "parseMessages")
+  @RequestMapping(value = "/{testContextId}/parseMessages", method = RequestMethod.POST,
+      consumes = {"text/plain", "application/octet-stream"}, produces = "application/json")
+  public BatchParseResult parseMessages(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      HttpServletRequest request) throws MessageParserException, IOException {
+    logger.info("Parsing messages with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageParserException("No test context found with id=" + testContextId);
+    }
+    return messageParser.parseAll(testContext,
+        new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  @ApiOperation(
+      value = "Split a message into its segments, fields, components and sub-components without a profile",
+      nickname = "parseMessageStructure")
+  @RequestMapping(value = "/parseMessageStructure", method = RequestMethod.POST,
+      consumes = "application/json", produces = "application/json")
+  public CompactMessageModel parseMessageStructure(
+      @ApiParam(value = "the message", required = true) @RequestBody final MessageParserCommand command) {
+    logger.info("Parsing message structure");
+    return messageParser.parseStructure(command);
+  }
+
+  @ApiOperation(
+      value = "Parse a message against a test context and stream the tree as json in the compact form",
+      nickname = "parseMessageStream")
+  @RequestMapping(value = "/{testContextId}/parseMessageStream", method = RequestMethod.POST,
+      consumes = "application/json")
+  public void parseMessageStream(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @ApiParam(value = "the message", required = true) @RequestBody final MessageParserCommand command,
+      HttpServletResponse response) throws MessageParserException, IOException {
+    logger.info("Streaming parsed message with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageParserException("No test context found with id=" + testContextId);
+    }
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setCharacterEncoding("UTF-8");
+    messageParser.writeJson(testContext, command, response.getOutputStream());
+  }
+
+  @ApiOperation(
+      value = "Parse a message against a test context and return its segments with a handle to expand them",
+      nickname = "parseMessageLazy")
+  @RequestMapping(value = "/{testContextId}/parseMessageLazy", method = RequestMethod.POST,
+      consumes = "application/json", produces = "application/json")
+  public LazyMessageModel parseMessageLazy(
+      @ApiParam(value = "the id of the test context",
+          required = true) @PathVariable final Long testContextId,
+      @ApiParam(value = "the message", required = true) @RequestBody final MessageParserCommand command)
+      throws MessageParserException {
+    logger.info("Parsing message lazily with testContext id=" + testContextId);
+    TestContext testContext = getTestContext(testContextId);
+    if (testContext == null) {
+      throw new MessageParserException("No test context found with id=" + testContextId);
+    }
+    return messageParser.parseLazy(testContext, command);
+  }
+
+  @ApiOperation(value = "Get the children of an element of a message parsed lazily",
+      nickname = "expandParsedMessage")
+  @RequestMapping(value = "/parsedMessage/{handle}/children", method = RequestMethod.GET,
+      produces = "application/json")
+  public List<CompactMessageNode> expandParsedMessage(
+      @ApiParam(value = "the handle returned by parseMessageLazy",
+          required = true) @PathVariable final String handle,
+      @ApiParam(value = "the uid path of the element",
+          required = true) @RequestParam(value = "path") final String path)
+      throws MessageParserException {
+    return messageParser.expand(handle, path);
+  }
+
+  @ApiOperation(value = "Get a segment of a message parsed lazily by line or by id and occurrence",
+      nickname = "getParsedMessageSegment")
+  @RequestMapping(value = "/parsedMessage/{handle}/segment", method = RequestMethod.GET,
+      produces = "application/json")
+  public MessageSegment getParsedMessageSegment(
+      @ApiParam(value = "the handle returned by parseMessageLazy",
+          required = true) @PathVariable final String handle,
+      @ApiParam(value = "the line of the segment") @RequestParam(value = "line",
+          required = false) final Integer line,
+      @ApiParam(value = "the id of the segment, used without line") @RequestParam(value = "id",
+          required = false) final String id,
+      @ApiParam(value = "the occurrence of the segment id, starting at 1") @RequestParam(
+          value = "occurrence", defaultValue = "1") final int occurrence,
+      @ApiParam(value = "true to include the parsed subtree") @RequestParam(value = "tree",
+          defaultValue = "false") final boolean tree)
+      throws MessageParserException {
+    if (line == null && id == null) {
+      throw new MessageParserException("A line or a segment id is required");
+    }
+    return messageParser.segment(handle, line, id, occurrence, tree);
+  }
+
+  @ApiOperation(value = "Get a recent validation report in json, html or xml",
+      nickname = "getValidationReport")
+  @RequestMapping(value = "/report/{reportId}/{format}", method = RequestMethod.GET)
+  public ResponseEntity<String> getValidationReport(
+      @ApiParam(value = "the id of the report returned by the validation",
+          required = true) @PathVariable final String reportId,
+      @ApiParam(value = "json, html or xml", required = true) @PathVariable final String format)
+      throws Exception {
+    ValidationReportHandle handle = messageValidator.getReportStore().get(reportId);
+    if (handle == null) {
+      return new ResponseEntity<String>("Report " + reportId + " not found or expired",
+          HttpStatus.NOT_FOUND);
+    }
+    HttpHeaders headers = new HttpHeaders();
+    if (ValidationReportHandle.JSON.equalsIgnoreCase(format)) {
+      headers.setContentType(MediaType.APPLICATION_JSON);
+    } else if (ValidationReportHandle.HTML.equalsIgnoreCase(format)) {
+      headers.setContentType(MediaType.TEXT_HTML);
+    } else if (ValidationReportHandle.XML.equalsIgnoreCase(format)) {
+      headers.setContentType(MediaType.APPLICATION_XML);
+    } else {
+      return new ResponseEntity<String>("Unsupported format " + format, HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<String>(handle.render(format, validationReportConverter), headers,
+        HttpStatus.OK);
+  }
 
   public HL7V2TestContextRepository getTestContextRepository() {
     return testContextRepository;
@@ -0,0 +1,238 @@
+package gov.nist.hit.core.hl7v2.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gov.nist.healthcare.unified.model.EnhancedReport;
+import gov.nist.hit.core.domain.TestContext;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationCommand;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationItem;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationResult;
+import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.CompiledValidationContext;
+import gov.nist.hit.core.hl7v2.service.impl.HL7V2MessageValidatorImpl;
+
+public class HL7V2TestContextControllerTest {
+
+  private static final String BATCH_FILE = "FHS|^~\\&|FILE\r" + "BHS|^~\\&|BATCH\r"
+      + "MSH|^~\\&|FIRST\r" + "PID|1\r" + "MSH|^~\\&|BAD\r" + "MSH|^~\\&|THIRD\r" + "OBX|1\r"
+      + "BTS|3\r" + "FTS|1\r";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private StubValidator validator;
+
+  private HL7V2TestContextController controller;
+
+  @Before
+  public void setUp() {
+    final HL7V2TestContext testContext = new HL7V2TestContext();
+    validator = new StubValidator();
+    validator.setBatchMaxParallelism(4);
+    validator.setExecutorConcurrency(4);
+    controller = new HL7V2TestContextController();
+    controller.messageValidator = validator;
+    controller.testContextRepository = proxy(HL7V2TestContextRepository.class,
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return "findOne".equals(method.getName()) ? testContext : null;
+          }
+        });
+  }
+
+  @After
+  public void tearDown() {
+    validator.shutdown();
+  }
+
+  @Test
+  public void testValidateMessagesAggregatesInInputOrder() throws Exception {
+    BatchValidationCommand command = new BatchValidationCommand();
+    command.setMessages(Arrays.asList("MSH|^~\\&|FIRST", "MSH|^~\\&|BAD", "MSH|^~\\&|THIRD"));
+    command.setContextType("Free");
+    command.setUserId(42L);
+    BatchValidationResult result = controller.validateMessages(1L, command, request(""));
+    assertEquals(3, result.getItems().size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i, result.getItems().get(i).getIndex());
+    }
+    assertEquals(BatchValidationItem.Status.VALIDATED, result.getItems().get(0).getStatus());
+    assertEquals(BatchValidationItem.Status.FAILED, result.getItems().get(1).getStatus());
+    assertEquals(BatchValidationItem.Status.VALIDATED, result.getItems().get(2).getStatus());
+    assertEquals(3, result.getSummary().getTotal());
+    assertEquals(2, result.getSummary().getValidated());
+    assertEquals(1, result.getSummary().getFailed());
+    // the user comes from the session, never from the body
+    assertEquals(Arrays.asList((Long) null, null), validator.userIds);
+  }
+
+  @Test
+  public void testValidateBatchFileSplitsAndStreams() throws Exception {
+    StringWriter out = new StringWriter();
+    controller.validateBatchFile(1L, "Free", 2, null, false, null, request(BATCH_FILE),
+        response(out));
+    String[] lines = out.toString().split("\n");
+    assertEquals(4, lines.length);
+    List<JsonNode> items = new ArrayList<JsonNode>();
+    for (int i = 0; i < 3; i++) {
+      items.add(mapper.readTree(lines[i]));
+    }
+    Collections.sort(items, (a, b) -> a.get("index").asInt() - b.get("index").asInt());
+    assertEquals(Arrays.asList(3, 5, 6), Arrays.asList(items.get(0).get("line").asInt(),
+        items.get(1).get("line").asInt(), items.get(2).get("line").asInt()));
+    assertEquals("VALIDATED", items.get(0).get("status").asText());
+    assertEquals("FAILED", items.get(1).get("status").asText());
+    assertEquals("VALIDATED", items.get(2).get("status").asText());
+    assertTrue(validator.messages.contains("MSH|^~\\&|FIRST\rPID|1"));
+    assertTrue(validator.messages.contains("MSH|^~\\&|THIRD\rOBX|1"));
+    JsonNode summary = mapper.readTree(lines[3]).get("summary");
+    assertEquals(3, summary.get("total").asInt());
+    assertEquals(1, summary.get("failed").asInt());
+    assertEquals(2, summary.get("parallelism").asInt());
+  }
+
+  @Test
+  public void testValidateBatchFileBoundsMessagesInFlight() throws Exception {
+    validator.delayMillis = 20;
+    StringBuilder file = new StringBuilder();
+    for (int i = 0; i < 12; i++) {
+      file.append("MSH|^~\\&|").append(i).append("\r");
+    }
+    StringWriter out = new StringWriter();
+    controller.validateBatchFile(1L, "Free", 2, null, false, null, request(file.toString()),
+        response(out));
+    JsonNode summary = mapper.readTree(out.toString().split("\n")[12]).get("summary");
+    assertEquals(12, summary.get("validated").asInt());
+    assertTrue("max in flight " + validator.maxRunning.get(), validator.maxRunning.get() <= 2);
+  }
+
+  private HttpServletRequest request(String body) {
+    final ServletInputStream in = new ServletInputStream() {
+      private final ByteArrayInputStream bytes =
+          new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+
+      @Override
+      public int read() {
+        return bytes.read();
+      }
+
+      @Override
+      public boolean isFinished() {
+        return bytes.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener listener) {}
+    };
+    // an anonymous session: every attribute, the user id included, is unset
+    final HttpSession session = proxy(HttpSession.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return null;
+      }
+    });
+    return proxy(HttpServletRequest.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if ("getInputStream".equals(method.getName())) {
+          return in;
+        }
+        return "getSession".equals(method.getName()) ? session : null;
+      }
+    });
+  }
+
+  private HttpServletResponse response(StringWriter out) {
+    final PrintWriter writer = new PrintWriter(out);
+    return proxy(HttpServletResponse.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return "getWriter".equals(method.getName()) ? writer : null;
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  /**
+   * Validator that skips the NIST validation: messages containing BAD fail, the others give no
+   * report
+   */
+  static class StubValidator extends HL7V2MessageValidatorImpl {
+
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    final List<Long> userIds = Collections.synchronizedList(new ArrayList<Long>());
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    volatile long delayMillis;
+
+    @Override
+    public CompiledValidationContext getCompiledValidationContext(HL7V2TestContext testContext) {
+      return new CompiledValidationContext(null, "profile", "<ConformanceProfile/>", null, null);
+    }
+
+    @Override
+    protected EnhancedReport generateReport(TestContext testContext,
+        CompiledValidationContext compiled, String message, String contextType,
+        Map<String, String> nav, boolean bypassCache) throws Exception {
+      int now = running.incrementAndGet();
+      maxRunning.accumulateAndGet(now, Math::max);
+      try {
+        messages.add(message);
+        if (delayMillis > 0) {
+          Thread.sleep(delayMillis);
+        }
+        if (message.contains("BAD")) {
+          throw new IOException("invalid message");
+        }
+        return null;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    @Override
+    protected void saveValidationLog(Long userId, TestContext testContext, EnhancedReport report) {
+      userIds.add(userId);
+    }
+  }
+
+}
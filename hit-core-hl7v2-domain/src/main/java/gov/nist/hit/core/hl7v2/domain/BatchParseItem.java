@@ -0,0 +1,108 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+
+import gov.nist.hit.core.domain.MessageModel;
+
+/**
+ * Outcome of the parse of one message of a multi-message upload
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class BatchParseItem implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Status {
+    PARSED, FAILED
+  }
+
+  private int index;
+
+  private Status status;
+
+  private MessageModel model;
+
+  private String error;
+
+  private long elapsedMillis;
+
+  /**
+   * Line of the MSH segment in the upload
+   */
+  private Integer line;
+
+  public BatchParseItem() {
+    super();
+  }
+
+  public BatchParseItem(int index, Status status, MessageModel model, String error,
+      long elapsedMillis) {
+    this.index = index;
+    this.status = status;
+    this.model = model;
+    this.error = error;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public MessageModel getModel() {
+    return model;
+  }
+
+  public void setModel(MessageModel model) {
+    this.model = model;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public Integer getLine() {
+    return line;
+  }
+
+  public void setLine(Integer line) {
+    this.line = line;
+  }
+
+}
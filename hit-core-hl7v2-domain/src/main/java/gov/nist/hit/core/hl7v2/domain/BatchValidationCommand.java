@@ -0,0 +1,138 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validation of several messages against the same test context
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class BatchValidationCommand implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private List<String> messages = new ArrayList<String>();
+
+  private String contextType;
+
+  private Map<String, String> nav;
+
+  private Long userId;
+
+  /**
+   * Maximum number of messages validated at the same time. Capped by the validator's own limit.
+   */
+  private Integer parallelism;
+
+  /**
+   * Maximum wall-clock time allowed to validate a single message
+   */
+  private Long timeoutMillis;
+
+  /**
+   * Validate even if a result for the same message and test context is cached
+   */
+  private boolean bypassCache;
+
+  /**
+   * Only report errors: informational and affirmative entries and the html report are left out
+   */
+  private boolean errorsOnly;
+
+  /**
+   * Maximum number of errors reported when errorsOnly is set, all of them if null
+   */
+  private Integer maxErrors;
+
+  public BatchValidationCommand() {
+    super();
+  }
+
+  public List<String> getMessages() {
+    return messages;
+  }
+
+  public void setMessages(List<String> messages) {
+    this.messages = messages;
+  }
+
+  public String getContextType() {
+    return contextType;
+  }
+
+  public void setContextType(String contextType) {
+    this.contextType = contextType;
+  }
+
+  public Map<String, String> getNav() {
+    return nav;
+  }
+
+  public void setNav(Map<String, String> nav) {
+    this.nav = nav;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public void setUserId(Long userId) {
+    this.userId = userId;
+  }
+
+  public Integer getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(Integer parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public Long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public void setTimeoutMillis(Long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public boolean isBypassCache() {
+    return bypassCache;
+  }
+
+  public void setBypassCache(boolean bypassCache) {
+    this.bypassCache = bypassCache;
+  }
+
+  public boolean isErrorsOnly() {
+    return errorsOnly;
+  }
+
+  public void setErrorsOnly(boolean errorsOnly) {
+    this.errorsOnly = errorsOnly;
+  }
+
+  public Integer getMaxErrors() {
+    return maxErrors;
+  }
+
+  public void setMaxErrors(Integer maxErrors) {
+    this.maxErrors = maxErrors;
+  }
+
+}
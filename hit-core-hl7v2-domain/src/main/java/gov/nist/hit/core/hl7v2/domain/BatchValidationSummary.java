@@ -0,0 +1,105 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+
+/**
+ * Aggregate figures of a batch validation
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class BatchValidationSummary implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private int total;
+
+  private int validated;
+
+  private int failed;
+
+  private int timedOut;
+
+  private int parallelism;
+
+  private long elapsedMillis;
+
+  public BatchValidationSummary() {
+    super();
+  }
+
+  public void add(BatchValidationItem item) {
+    total++;
+    switch (item.getStatus()) {
+      case VALIDATED:
+        validated++;
+        break;
+      case FAILED:
+        failed++;
+        break;
+      case TIMEOUT:
+        timedOut++;
+        break;
+    }
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public void setTotal(int total) {
+    this.total = total;
+  }
+
+  public int getValidated() {
+    return validated;
+  }
+
+  public void setValidated(int validated) {
+    this.validated = validated;
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public void setFailed(int failed) {
+    this.failed = failed;
+  }
+
+  public int getTimedOut() {
+    return timedOut;
+  }
+
+  public void setTimedOut(int timedOut) {
+    this.timedOut = timedOut;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+}
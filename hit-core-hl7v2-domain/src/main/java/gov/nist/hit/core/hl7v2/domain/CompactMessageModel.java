@@ -0,0 +1,64 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Compact form of the parsed message tree: one {@link CompactMessageNode} per segment, field,
+ * component and sub-component
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+@JsonInclude(Include.NON_NULL)
+public class CompactMessageModel implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private List<CompactMessageNode> elements = new ArrayList<CompactMessageNode>();
+
+  private Map<String, String> delimeters;
+
+  public CompactMessageModel() {
+    super();
+  }
+
+  public CompactMessageModel(List<CompactMessageNode> elements, Map<String, String> delimeters) {
+    super();
+    this.elements = elements;
+    this.delimeters = delimeters;
+  }
+
+  public List<CompactMessageNode> getElements() {
+    return elements;
+  }
+
+  public void setElements(List<CompactMessageNode> elements) {
+    this.elements = elements;
+  }
+
+  public Map<String, String> getDelimeters() {
+    return delimeters;
+  }
+
+  public void setDelimeters(Map<String, String> delimeters) {
+    this.delimeters = delimeters;
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Node of a {@link CompactMessageModel}. The value of a leaf is held by the node itself instead
+ * of a child element, positions and cardinalities are primitives and the repeated strings (type,
+ * name, usage) are shared between the nodes of a message.
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+@JsonInclude(Include.NON_NULL)
+public class CompactMessageNode implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String type;
+
+  private String name;
+
+  private String path;
+
+  private String usage;
+
+  private int minOccurs = -1;
+
+  private String maxOccurs;
+
+  private int line;
+
+  private int column;
+
+  private int position;
+
+  private int instance;
+
+  private String value;
+
+  private List<CompactMessageNode> children;
+
+  /**
+   * Number of children of a node returned without them, null when the children are included
+   */
+  private Integer childCount;
+
+  public CompactMessageNode() {
+    super();
+  }
+
+  public CompactMessageNode(String type, String name, String path, String usage, int minOccurs,
+      String maxOccurs, int line, int column, int position, int instance) {
+    super();
+    this.type = type;
+    this.name = name;
+    this.path = path;
+    this.usage = usage;
+    this.minOccurs = minOccurs;
+    this.maxOccurs = maxOccurs;
+    this.line = line;
+    this.column = column;
+    this.position = position;
+    this.instance = instance;
+  }
+
+  public void addChild(CompactMessageNode child) {
+    if (children == null) {
+      children = new ArrayList<CompactMessageNode>(4);
+    }
+    children.add(child);
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public String getUsage() {
+    return usage;
+  }
+
+  public void setUsage(String usage) {
+    this.usage = usage;
+  }
+
+  public int getMinOccurs() {
+    return minOccurs;
+  }
+
+  public void setMinOccurs(int minOccurs) {
+    this.minOccurs = minOccurs;
+  }
+
+  public String getMaxOccurs() {
+    return maxOccurs;
+  }
+
+  public void setMaxOccurs(String maxOccurs) {
+    this.maxOccurs = maxOccurs;
+  }
+
+  public int getLine() {
+    return line;
+  }
+
+  public void setLine(int line) {
+    this.line = line;
+  }
+
+  public int getColumn() {
+    return column;
+  }
+
+  public void setColumn(int column) {
+    this.column = column;
+  }
+
+  public int getPosition() {
+    return position;
+  }
+
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public int getInstance() {
+    return instance;
+  }
+
+  public void setInstance(int instance) {
+    this.instance = instance;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public void setValue(String value) {
+    this.value = value;
+  }
+
+  public List<CompactMessageNode> getChildren() {
+    return children;
+  }
+
+  public void setChildren(List<CompactMessageNode> children) {
+    this.children = children;
+  }
+
+  public Integer getChildCount() {
+    return childCount;
+  }
+
+  public void setChildCount(Integer childCount) {
+    this.childCount = childCount;
+  }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import gov.nist.hit.core.domain.MessageValidationCommand;
+
+/**
+ * Validation command with HL7 v2 specific options
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class HL7V2MessageValidationCommand extends MessageValidationCommand {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Validate even if a result for the same message and test context is cached
+   */
+  private boolean bypassCache;
+
+  /**
+   * Only report errors: informational and affirmative entries and the html report are left out
+   */
+  private boolean errorsOnly;
+
+  /**
+   * Maximum number of errors reported when errorsOnly is set, all of them if null
+   */
+  private Integer maxErrors;
+
+  public HL7V2MessageValidationCommand() {
+    super();
+  }
+
+  public boolean isBypassCache() {
+    return bypassCache;
+  }
+
+  public void setBypassCache(boolean bypassCache) {
+    this.bypassCache = bypassCache;
+  }
+
+  public boolean isErrorsOnly() {
+    return errorsOnly;
+  }
+
+  public void setErrorsOnly(boolean errorsOnly) {
+    this.errorsOnly = errorsOnly;
+  }
+
+  public Integer getMaxErrors() {
+    return maxErrors;
+  }
+
+  public void setMaxErrors(Integer maxErrors) {
+    this.maxErrors = maxErrors;
+  }
+
+}
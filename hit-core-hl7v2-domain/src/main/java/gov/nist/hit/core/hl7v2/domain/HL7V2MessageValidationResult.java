@@ -0,0 +1,41 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import gov.nist.hit.core.domain.MessageValidationResult;
+
+/**
+ * Validation result carrying the id under which the report can be fetched in other formats
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class HL7V2MessageValidationResult extends MessageValidationResult {
+
+  private static final long serialVersionUID = 1L;
+
+  private String reportId;
+
+  public HL7V2MessageValidationResult(String json, String html, String reportId) {
+    super(json, html);
+    this.reportId = reportId;
+  }
+
+  public String getReportId() {
+    return reportId;
+  }
+
+  public void setReportId(String reportId) {
+    this.reportId = reportId;
+  }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segments of a parsed message without their children, and the handle of the parsed message
+ * kept on the server to expand them
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class LazyMessageModel extends CompactMessageModel {
+
+  private static final long serialVersionUID = 1L;
+
+  private String handle;
+
+  public LazyMessageModel() {
+    super();
+  }
+
+  public LazyMessageModel(String handle, List<CompactMessageNode> elements,
+      Map<String, String> delimeters) {
+    super(elements, delimeters);
+    this.handle = handle;
+  }
+
+  public String getHandle() {
+    return handle;
+  }
+
+  public void setHandle(String handle) {
+    this.handle = handle;
+  }
+
+}
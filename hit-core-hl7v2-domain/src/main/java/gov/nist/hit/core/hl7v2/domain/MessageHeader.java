@@ -0,0 +1,72 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routing fields of an MSH segment: MSH-9 message type, trigger event and structure id, and the
+ * entity identifiers of the MSH-21 message profile identifiers
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class MessageHeader implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String messageType;
+  private String event;
+  private String structureId;
+  private List<String> profileIdentifiers = new ArrayList<String>();
+
+  public String getMessageType() {
+    return messageType;
+  }
+
+  public void setMessageType(String messageType) {
+    this.messageType = messageType;
+  }
+
+  public String getEvent() {
+    return event;
+  }
+
+  public void setEvent(String event) {
+    this.event = event;
+  }
+
+  public String getStructureId() {
+    return structureId;
+  }
+
+  public void setStructureId(String structureId) {
+    this.structureId = structureId;
+  }
+
+  public List<String> getProfileIdentifiers() {
+    return profileIdentifiers;
+  }
+
+  public void setProfileIdentifiers(List<String> profileIdentifiers) {
+    this.profileIdentifiers = profileIdentifiers;
+  }
+
+  @Override
+  public String toString() {
+    return "MessageHeader [messageType=" + messageType + ", event=" + event + ", structureId=" + structureId
+        + ", profileIdentifiers=" + profileIdentifiers + "]";
+  }
+
+}
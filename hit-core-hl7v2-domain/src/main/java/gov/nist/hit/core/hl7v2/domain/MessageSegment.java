@@ -0,0 +1,110 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * A segment of a parsed message found by line or by id and occurrence: its location in the
+ * message, its raw text and, when asked for, its parsed subtree
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+@JsonInclude(Include.NON_NULL)
+public class MessageSegment implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private String id;
+
+  private int occurrence;
+
+  private int offset;
+
+  private int line;
+
+  private String raw;
+
+  private CompactMessageNode tree;
+
+  public MessageSegment() {
+    super();
+  }
+
+  public MessageSegment(String id, int occurrence, int offset, int line, String raw) {
+    super();
+    this.id = id;
+    this.occurrence = occurrence;
+    this.offset = offset;
+    this.line = line;
+    this.raw = raw;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public int getOccurrence() {
+    return occurrence;
+  }
+
+  public void setOccurrence(int occurrence) {
+    this.occurrence = occurrence;
+  }
+
+  /**
+   * @return the character offset of the segment in the message
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset(int offset) {
+    this.offset = offset;
+  }
+
+  public int getLine() {
+    return line;
+  }
+
+  public void setLine(int line) {
+    this.line = line;
+  }
+
+  public String getRaw() {
+    return raw;
+  }
+
+  public void setRaw(String raw) {
+    this.raw = raw;
+  }
+
+  /**
+   * @return the parsed segment or null when not requested or not part of the parsed message
+   */
+  public CompactMessageNode getTree() {
+    return tree;
+  }
+
+  public void setTree(CompactMessageNode tree) {
+    this.tree = tree;
+  }
+
+}
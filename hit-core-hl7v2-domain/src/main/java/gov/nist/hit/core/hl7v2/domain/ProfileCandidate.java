@@ -0,0 +1,74 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+
+/**
+ * Test context whose conformance profile matches the header of a message
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class ProfileCandidate implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * How the profile matched, from the most to the least specific
+   */
+  public enum Match {
+    PROFILE_IDENTIFIER, STRUCTURE, EVENT
+  }
+
+  private Long testContextId;
+
+  private String conformanceProfileId;
+
+  private Match match;
+
+  public ProfileCandidate() {
+    super();
+  }
+
+  public ProfileCandidate(Long testContextId, String conformanceProfileId, Match match) {
+    super();
+    this.testContextId = testContextId;
+    this.conformanceProfileId = conformanceProfileId;
+    this.match = match;
+  }
+
+  public Long getTestContextId() {
+    return testContextId;
+  }
+
+  public void setTestContextId(Long testContextId) {
+    this.testContextId = testContextId;
+  }
+
+  public String getConformanceProfileId() {
+    return conformanceProfileId;
+  }
+
+  public void setConformanceProfileId(String conformanceProfileId) {
+    this.conformanceProfileId = conformanceProfileId;
+  }
+
+  public Match getMatch() {
+    return match;
+  }
+
+  public void setMatch(Match match) {
+    this.match = match;
+  }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.nist.hit.core.domain.MessageValidationResult;
+
+/**
+ * Test contexts matching the header of a message and, when asked for, the validation of the
+ * message against the best of them
+ * 
+ * @author Harold Affo (NIST)
+ * 
+ */
+public class ProfileDetectionResult implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private MessageHeader header;
+
+  private List<ProfileCandidate> candidates = new ArrayList<ProfileCandidate>();
+
+  private MessageValidationResult validation;
+
+  public ProfileDetectionResult() {
+    super();
+  }
+
+  public MessageHeader getHeader() {
+    return header;
+  }
+
+  public void setHeader(MessageHeader header) {
+    this.header = header;
+  }
+
+  public List<ProfileCandidate> getCandidates() {
+    return candidates;
+  }
+
+  public void setCandidates(List<ProfileCandidate> candidates) {
+    this.candidates = candidates;
+  }
+
+  public MessageValidationResult getValidation() {
+    return validation;
+  }
+
+  public void setValidation(MessageValidationResult validation) {
+    this.validation = validation;
+  }
+
+}
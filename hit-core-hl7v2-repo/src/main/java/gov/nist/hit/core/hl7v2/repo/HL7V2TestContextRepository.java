@@ -3,6 +3,8 @@ package gov.nist.hit.core.hl7v2.repo;
 import gov.nist.hit.core.domain.ConformanceProfile;
 import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,4 +13,18 @@ public interface HL7V2TestContextRepository extends JpaRepository<HL7V2TestConte
 
   @Query("select tc.conformanceProfile from TestContext tc where tc.id = :id")
   public ConformanceProfile findConformanceProfileByTestContextId(@Param("id") Long id);
+
+  @Query("select tc.id from HL7V2TestContext tc")
+  public List<Long> findAllIds();
+
+  /**
+   * 
+   * @return the id of each test context with the id and the source id of its conformance profile,
+   *         without loading the xml
+   */
+  @Query("select tc.id, cp.id, cp.sourceId from HL7V2TestContext tc join tc.conformanceProfile cp")
+  public List<Object[]> findConformanceProfileSummaries();
+
+  @Query("select cp.xml from HL7V2TestContext tc join tc.conformanceProfile cp where tc.id = :id")
+  public String findConformanceProfileXmlByTestContextId(@Param("id") Long id);
 }
@@ -0,0 +1,350 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import gov.nist.healthcare.unified.model.EnhancedReport;
+import gov.nist.hit.core.domain.TestContext;
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.service.ValidationLogService;
+
+/**
+ * Writes validation logs on a background thread so that validations do not wait for the
+ * database. Records are queued in a bounded queue and written in batches, each batch in a single
+ * transaction when a transaction manager is available. A record keeps the user id, the test
+ * context id and the report built by the validation, the test context is loaded by the writer
+ * thread. Records submitted after {@link #shutdown(long)} are written on the caller thread.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class AsyncValidationLogWriter {
+
+	static final Logger logger = LoggerFactory.getLogger(AsyncValidationLogWriter.class);
+
+	/**
+	 * What happens to a log record when the queue cannot take it
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The validation thread waits for room in the queue. No log is lost.
+		 */
+		BLOCK,
+		/**
+		 * The record is dropped and counted.
+		 */
+		DROP,
+		/**
+		 * Once the queue is three quarters full only one record out of {@code sampleRate} is kept,
+		 * the others are dropped and counted. Records are dropped when the queue is full.
+		 */
+		SAMPLE
+	}
+
+	private static class Record {
+		final Long userId;
+		final Long testContextId;
+		final EnhancedReport report;
+
+		Record(Long userId, Long testContextId, EnhancedReport report) {
+			this.userId = userId;
+			this.testContextId = testContextId;
+			this.report = report;
+		}
+	}
+
+	private final ValidationLogService validationLogService;
+	private final HL7V2TestContextRepository testContextRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final BlockingQueue<Record> queue;
+	private final int capacity;
+	private final int batchSize;
+	private final OverflowPolicy overflowPolicy;
+	private final int sampleRate;
+	private final Thread worker;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile boolean closed;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong totalFlushMillis = new AtomicLong();
+	private volatile long lastFlushMillis;
+	private volatile long maxFlushMillis;
+
+	public AsyncValidationLogWriter(ValidationLogService validationLogService,
+			HL7V2TestContextRepository testContextRepository, PlatformTransactionManager transactionManager,
+			int capacity, int batchSize, OverflowPolicy overflowPolicy, int sampleRate) {
+		this.validationLogService = validationLogService;
+		this.testContextRepository = testContextRepository;
+		this.transactionTemplate = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+		this.capacity = Math.max(1, capacity);
+		this.queue = new ArrayBlockingQueue<Record>(this.capacity);
+		this.batchSize = Math.max(1, batchSize);
+		this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+		this.sampleRate = Math.max(1, sampleRate);
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "hl7v2-validation-log-writer");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Queues the log of a validation according to the overflow policy
+	 * 
+	 * @param userId
+	 * @param testContextId
+	 * @param report
+	 */
+	public void submit(Long userId, Long testContextId, EnhancedReport report) {
+		long count = submitted.incrementAndGet();
+		Record record = new Record(userId, testContextId, report);
+		lock.readLock().lock();
+		try {
+			// shutdown waits for the read lock, so nothing is queued once the worker may exit
+			if (!closed && worker.isAlive()) {
+				enqueue(record, count);
+				return;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		write(record);
+	}
+
+	private void enqueue(Record record, long count) {
+		switch (overflowPolicy) {
+		case BLOCK:
+			try {
+				while (!queue.offer(record, 500, TimeUnit.MILLISECONDS)) {
+					if (!worker.isAlive()) {
+						write(record);
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				dropped.incrementAndGet();
+			}
+			break;
+		case SAMPLE:
+			if (queue.size() >= capacity * 3 / 4 && count % sampleRate != 0) {
+				dropped.incrementAndGet();
+			} else if (!queue.offer(record)) {
+				dropped.incrementAndGet();
+			}
+			break;
+		default:
+			if (!queue.offer(record)) {
+				dropped.incrementAndGet();
+			}
+		}
+	}
+
+	private void drain() {
+		List<Record> batch = new ArrayList<Record>(batchSize);
+		try {
+			while (!closed || !queue.isEmpty()) {
+				Record first = queue.poll(500, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				flush(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		batch.clear();
+		queue.drainTo(batch);
+		flush(batch);
+	}
+
+	private void flush(final List<Record> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		if (transactionTemplate != null) {
+			try {
+				transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						for (Record record : batch) {
+							save(record);
+						}
+					}
+				});
+				written.addAndGet(batch.size());
+			} catch (RuntimeException e) {
+				logger.warn("Failed to write a batch of " + batch.size()
+						+ " validation logs, writing them one by one: " + e.getMessage());
+				for (Record record : batch) {
+					write(record);
+				}
+			}
+		} else {
+			for (Record record : batch) {
+				write(record);
+			}
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		batches.incrementAndGet();
+		totalFlushMillis.addAndGet(elapsed);
+		lastFlushMillis = elapsed;
+		if (elapsed > maxFlushMillis) {
+			maxFlushMillis = elapsed;
+		}
+	}
+
+	private void write(Record record) {
+		try {
+			save(record);
+			written.incrementAndGet();
+		} catch (RuntimeException e) {
+			failed.incrementAndGet();
+			logger.warn("Failed to write validation log: " + e.getMessage());
+		}
+	}
+
+	private void save(Record record) {
+		TestContext testContext = testContextRepository.findOne(record.testContextId);
+		validationLogService.generateAndSave(record.userId, testContext, record.report);
+	}
+
+	/**
+	 * Stops accepting records in the queue and waits for the queued ones to be written
+	 * 
+	 * @param timeoutMillis
+	 * @return true if all the queued records were written
+	 */
+	public boolean shutdown(long timeoutMillis) {
+		lock.writeLock().lock();
+		try {
+			closed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			worker.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return !worker.isAlive();
+	}
+
+	public Statistics getStatistics() {
+		long count = batches.get();
+		return new Statistics(queue.size(), capacity, overflowPolicy.name(), submitted.get(), written.get(),
+				dropped.get(), failed.get(), count, lastFlushMillis, maxFlushMillis,
+				count == 0 ? 0 : (double) totalFlushMillis.get() / count);
+	}
+
+	public static class Statistics {
+		private final int queueDepth;
+		private final int queueCapacity;
+		private final String overflowPolicy;
+		private final long submitted;
+		private final long written;
+		private final long dropped;
+		private final long failed;
+		private final long batches;
+		private final long lastFlushMillis;
+		private final long maxFlushMillis;
+		private final double averageFlushMillis;
+
+		public Statistics(int queueDepth, int queueCapacity, String overflowPolicy, long submitted, long written,
+				long dropped, long failed, long batches, long lastFlushMillis, long maxFlushMillis,
+				double averageFlushMillis) {
+			this.queueDepth = queueDepth;
+			this.queueCapacity = queueCapacity;
+			this.overflowPolicy = overflowPolicy;
+			this.submitted = submitted;
+			this.written = written;
+			this.dropped = dropped;
+			this.failed = failed;
+			this.batches = batches;
+			this.lastFlushMillis = lastFlushMillis;
+			this.maxFlushMillis = maxFlushMillis;
+			this.averageFlushMillis = averageFlushMillis;
+		}
+
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public String getOverflowPolicy() {
+			return overflowPolicy;
+		}
+
+		public long getSubmitted() {
+			return submitted;
+		}
+
+		public long getWritten() {
+			return written;
+		}
+
+		public long getDropped() {
+			return dropped;
+		}
+
+		public long getFailed() {
+			return failed;
+		}
+
+		public long getBatches() {
+			return batches;
+		}
+
+		public long getLastFlushMillis() {
+			return lastFlushMillis;
+		}
+
+		public long getMaxFlushMillis() {
+			return maxFlushMillis;
+		}
+
+		public double getAverageFlushMillis() {
+			return averageFlushMillis;
+		}
+
+	}
+
+}
@@ -0,0 +1,32 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import gov.nist.hit.core.hl7v2.domain.BatchValidationItem;
+
+/**
+ * Receives the results of a batch validation as they complete. Calls are never concurrent.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public interface BatchValidationListener {
+
+	/**
+	 * 
+	 * @param item
+	 * @throws Exception
+	 *             to abort the batch
+	 */
+	public void onResult(BatchValidationItem item) throws Exception;
+
+}
@@ -0,0 +1,160 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gov.nist.hit.core.hl7v2.domain.CompactMessageModel;
+import gov.nist.hit.core.hl7v2.domain.CompactMessageNode;
+import hl7.v2.instance.ComplexComponent;
+import hl7.v2.instance.ComplexField;
+import hl7.v2.instance.Component;
+import hl7.v2.instance.Field;
+import hl7.v2.instance.Location;
+import hl7.v2.instance.Message;
+import hl7.v2.instance.NULLComplexField;
+import hl7.v2.instance.Segment;
+import hl7.v2.instance.SimpleComponent;
+import hl7.v2.profile.Req;
+import scala.collection.Iterator;
+
+/**
+ * Builds the compact nodes of a message instance, either the whole tree or one level at a time.
+ * The strings repeated across the nodes are shared through a lookup table that lives as long as
+ * the builder.
+ *
+ * @author Harold Affo
+ *
+ */
+class CompactModelBuilder extends MessageTreeWalker<RuntimeException> {
+
+	private final Map<String, String> strings = new HashMap<String, String>();
+
+	private final Deque<CompactMessageNode> path = new ArrayDeque<CompactMessageNode>();
+
+	private CompactMessageNode built;
+
+	/**
+	 * Builds the whole tree of the message
+	 *
+	 * @param message
+	 * @return
+	 */
+	CompactMessageModel build(Message message) {
+		List<CompactMessageNode> elements = new ArrayList<CompactMessageNode>();
+		for (Segment segment : segments(message)) {
+			elements.add(segment(segment, true));
+		}
+		return new CompactMessageModel(elements, null);
+	}
+
+	/**
+	 * Builds the nodes of the direct children of a segment, field or component, each with its
+	 * number of children
+	 *
+	 * @param element
+	 * @return
+	 */
+	List<CompactMessageNode> children(Object element) {
+		List<CompactMessageNode> children = new ArrayList<CompactMessageNode>();
+		if (element instanceof Segment) {
+			Iterator<Field> it = ((Segment) element).children().iterator();
+			while (it.hasNext()) {
+				children.add(field(it.next(), false));
+			}
+		} else if (element instanceof ComplexField && !(element instanceof NULLComplexField)) {
+			Iterator<Component> it = ((ComplexField) element).children().iterator();
+			while (it.hasNext()) {
+				children.add(component(it.next(), false));
+			}
+		} else if (element instanceof ComplexComponent) {
+			Iterator<SimpleComponent> it = ((ComplexComponent) element).children().iterator();
+			while (it.hasNext()) {
+				children.add(subComponent(it.next()));
+			}
+		}
+		return children;
+	}
+
+	CompactMessageNode segment(Segment s, boolean deep) {
+		walkSegment(s, deep);
+		return built;
+	}
+
+	CompactMessageNode field(Field f, boolean deep) {
+		walkField(f, deep);
+		return built;
+	}
+
+	CompactMessageNode component(Component c, boolean deep) {
+		walkComponent(c, deep);
+		return built;
+	}
+
+	CompactMessageNode subComponent(SimpleComponent s) {
+		walkSubComponent(s);
+		return built;
+	}
+
+	@Override
+	protected void start(String type, Location loc, Req req, int minOccurs, String maxOccurs, int position,
+			int instance) {
+		CompactMessageNode node = new CompactMessageNode(type, share(loc.desc()), loc.uidPath(),
+				share(req.usage().toString()), minOccurs, share(maxOccurs), loc.line(), loc.column(), position,
+				instance);
+		if (!path.isEmpty()) {
+			path.peek().addChild(node);
+		}
+		path.push(node);
+	}
+
+	@Override
+	protected void value(String value) {
+		path.peek().setValue(value);
+	}
+
+	@Override
+	protected void childCount(int count) {
+		path.peek().setChildCount(count);
+	}
+
+	@Override
+	protected void startChildren() {
+	}
+
+	@Override
+	protected void endChildren() {
+	}
+
+	@Override
+	protected void end() {
+		built = path.pop();
+	}
+
+	private String share(String value) {
+		if (value == null) {
+			return null;
+		}
+		String shared = strings.get(value);
+		if (shared == null) {
+			strings.put(value, value);
+			shared = value;
+		}
+		return shared;
+	}
+
+}
@@ -0,0 +1,61 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import hl7.v2.validation.content.ConformanceContext;
+import hl7.v2.validation.vs.ValueSetLibrary;
+
+/**
+ * The artifacts built from the resources of a test context and shared by all the validations
+ * against it. Instances are immutable and safe to share between threads.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class CompiledValidationContext {
+
+	private final ValidationContextKey key;
+	private final String conformanceProfileId;
+	private final String profileXml;
+	private final ConformanceContext conformanceContext;
+	private final ValueSetLibrary valueSetLibrary;
+
+	public CompiledValidationContext(ValidationContextKey key, String conformanceProfileId, String profileXml,
+			ConformanceContext conformanceContext, ValueSetLibrary valueSetLibrary) {
+		this.key = key;
+		this.conformanceProfileId = conformanceProfileId;
+		this.profileXml = profileXml;
+		this.conformanceContext = conformanceContext;
+		this.valueSetLibrary = valueSetLibrary;
+	}
+
+	public ValidationContextKey getKey() {
+		return key;
+	}
+
+	public String getConformanceProfileId() {
+		return conformanceProfileId;
+	}
+
+	public String getProfileXml() {
+		return profileXml;
+	}
+
+	public ConformanceContext getConformanceContext() {
+		return conformanceContext;
+	}
+
+	public ValueSetLibrary getValueSetLibrary() {
+		return valueSetLibrary;
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gov.nist.hit.core.domain.constraints.ByID;
+import gov.nist.hit.core.domain.constraints.ByName;
+import gov.nist.hit.core.domain.constraints.ByNameOrByID;
+import gov.nist.hit.core.domain.constraints.ConformanceStatement;
+import gov.nist.hit.core.domain.constraints.Constraints;
+import gov.nist.hit.core.domain.constraints.Context;
+import gov.nist.hit.core.domain.constraints.Predicate;
+
+/**
+ * Conformance statements and predicates of merged constraints, indexed by context type and
+ * target id or name. Looking up the constraints of an element returns them in the order of the
+ * constraints file, as a scan of the context would. The index is not modified once built and can
+ * be shared between parses.
+ *
+ * @author Harold Affo
+ *
+ */
+public class ConstraintIndex {
+
+	public enum Type {
+		MESSAGE, GROUP, SEGMENT, DATATYPE
+	}
+
+	private static class Entry<T> {
+		final int order;
+		final List<T> items;
+
+		Entry(int order, List<T> items) {
+			this.order = order;
+			this.items = items;
+		}
+	}
+
+	private final Map<String, List<Entry<ConformanceStatement>>> conformanceStatements =
+			new HashMap<String, List<Entry<ConformanceStatement>>>();
+	private final Map<String, List<Entry<Predicate>>> predicates = new HashMap<String, List<Entry<Predicate>>>();
+
+	/**
+	 *
+	 * @param conformanceStatements
+	 *            : may be null
+	 * @param predicates
+	 *            : may be null
+	 */
+	public ConstraintIndex(Constraints conformanceStatements, Constraints predicates) {
+		if (conformanceStatements != null) {
+			indexConformanceStatements(Type.MESSAGE, conformanceStatements.getMessages());
+			indexConformanceStatements(Type.GROUP, conformanceStatements.getGroups());
+			indexConformanceStatements(Type.SEGMENT, conformanceStatements.getSegments());
+			indexConformanceStatements(Type.DATATYPE, conformanceStatements.getDatatypes());
+		}
+		if (predicates != null) {
+			indexPredicates(Type.MESSAGE, predicates.getMessages());
+			indexPredicates(Type.GROUP, predicates.getGroups());
+			indexPredicates(Type.SEGMENT, predicates.getSegments());
+			indexPredicates(Type.DATATYPE, predicates.getDatatypes());
+		}
+	}
+
+	private void indexConformanceStatements(Type type, Context context) {
+		if (context == null || context.getByNameOrByIDs() == null) {
+			return;
+		}
+		int order = 0;
+		for (ByNameOrByID byNameOrByID : context.getByNameOrByIDs()) {
+			if (byNameOrByID instanceof ByID) {
+				ByID byID = (ByID) byNameOrByID;
+				add(conformanceStatements, idKey(type, byID.getByID()), order, byID.getConformanceStatements());
+			} else if (byNameOrByID instanceof ByName) {
+				ByName byName = (ByName) byNameOrByID;
+				add(conformanceStatements, nameKey(type, byName.getByName()), order,
+						byName.getConformanceStatements());
+			}
+			order++;
+		}
+	}
+
+	private void indexPredicates(Type type, Context context) {
+		if (context == null || context.getByNameOrByIDs() == null) {
+			return;
+		}
+		int order = 0;
+		for (ByNameOrByID byNameOrByID : context.getByNameOrByIDs()) {
+			if (byNameOrByID instanceof ByID) {
+				ByID byID = (ByID) byNameOrByID;
+				add(predicates, idKey(type, byID.getByID()), order, byID.getPredicates());
+			} else if (byNameOrByID instanceof ByName) {
+				ByName byName = (ByName) byNameOrByID;
+				add(predicates, nameKey(type, byName.getByName()), order, byName.getPredicates());
+			}
+			order++;
+		}
+	}
+
+	private static <T> void add(Map<String, List<Entry<T>>> map, String key, int order, Iterable<T> items) {
+		if (items == null) {
+			return;
+		}
+		List<T> copy = new ArrayList<T>();
+		for (T item : items) {
+			copy.add(item);
+		}
+		if (copy.isEmpty()) {
+			return;
+		}
+		List<Entry<T>> entries = map.get(key);
+		if (entries == null) {
+			entries = new ArrayList<Entry<T>>(1);
+			map.put(key, entries);
+		}
+		entries.add(new Entry<T>(order, copy));
+	}
+
+	/**
+	 *
+	 * @param type
+	 * @param id
+	 * @param name
+	 * @return the conformance statements targeting the id or the name, in a new list
+	 */
+	public ArrayList<ConformanceStatement> conformanceStatements(Type type, String id, String name) {
+		return lookup(conformanceStatements, type, id, name);
+	}
+
+	/**
+	 *
+	 * @param type
+	 * @param id
+	 * @param name
+	 * @return the predicates targeting the id or the name, in a new list
+	 */
+	public ArrayList<Predicate> predicates(Type type, String id, String name) {
+		return lookup(predicates, type, id, name);
+	}
+
+	private static <T> ArrayList<T> lookup(Map<String, List<Entry<T>>> map, Type type, String id, String name) {
+		List<Entry<T>> byId = id != null ? map.get(idKey(type, id)) : null;
+		List<Entry<T>> byName = name != null ? map.get(nameKey(type, name)) : null;
+		if (byId == null) {
+			byId = Collections.emptyList();
+		}
+		if (byName == null) {
+			byName = Collections.emptyList();
+		}
+		ArrayList<T> result = new ArrayList<T>();
+		int i = 0;
+		int j = 0;
+		while (i < byId.size() || j < byName.size()) {
+			if (j >= byName.size() || (i < byId.size() && byId.get(i).order < byName.get(j).order)) {
+				result.addAll(byId.get(i++).items);
+			} else {
+				result.addAll(byName.get(j++).items);
+			}
+		}
+		return result;
+	}
+
+	private static String idKey(Type type, String id) {
+		return type.ordinal() + "|I|" + id;
+	}
+
+	private static String nameKey(Type type, String name) {
+		return type.ordinal() + "|N|" + name;
+	}
+
+}
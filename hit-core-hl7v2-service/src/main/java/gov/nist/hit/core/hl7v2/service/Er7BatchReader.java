@@ -0,0 +1,197 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the messages of an HL7 v2 batch file (FHS/BHS/MSH...BTS/FTS) one at a time. Only the
+ * message being assembled is held in memory, whatever the size of the file. Messages are split on
+ * MSH segments and the current file and batch headers are attached to each message. Segments are
+ * joined with a carriage return.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class Er7BatchReader implements Iterator<Er7BatchReader.BatchMessage>, Closeable {
+
+	public static class BatchMessage {
+		private final int index;
+		private final int line;
+		private final String content;
+		private final String fileHeader;
+		private final String batchHeader;
+
+		public BatchMessage(int index, int line, String content, String fileHeader, String batchHeader) {
+			this.index = index;
+			this.line = line;
+			this.content = content;
+			this.fileHeader = fileHeader;
+			this.batchHeader = batchHeader;
+		}
+
+		/**
+		 * @return the position of the message in the file, starting at 0
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the line of the MSH segment in the file, starting at 1, or -1 if unknown
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		public String getContent() {
+			return content;
+		}
+
+		public String getFileHeader() {
+			return fileHeader;
+		}
+
+		public String getBatchHeader() {
+			return batchHeader;
+		}
+	}
+
+	private static final String SEGMENT_SEPARATOR = "\r";
+
+	private final BufferedReader reader;
+	private String fileHeader;
+	private String batchHeader;
+	private int lineNumber;
+	private int index;
+	private int batches;
+	private StringBuilder current;
+	private int currentLine;
+	private String currentFileHeader;
+	private String currentBatchHeader;
+	private BatchMessage next;
+	private boolean eof;
+
+	public Er7BatchReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && !eof) {
+			try {
+				next = read();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public BatchMessage next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		BatchMessage m = next;
+		next = null;
+		return m;
+	}
+
+	private BatchMessage read() throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			String segment = line;
+			if (segment.startsWith("MSH")) {
+				BatchMessage m = complete();
+				start(segment);
+				if (m != null) {
+					return m;
+				}
+			} else if (segment.startsWith("FHS")) {
+				BatchMessage m = complete();
+				fileHeader = segment;
+				if (m != null) {
+					return m;
+				}
+			} else if (segment.startsWith("BHS")) {
+				BatchMessage m = complete();
+				batchHeader = segment;
+				batches++;
+				if (m != null) {
+					return m;
+				}
+			} else if (segment.startsWith("BTS")) {
+				BatchMessage m = complete();
+				batchHeader = null;
+				if (m != null) {
+					return m;
+				}
+			} else if (segment.startsWith("FTS")) {
+				BatchMessage m = complete();
+				fileHeader = null;
+				if (m != null) {
+					return m;
+				}
+			} else if (current != null) {
+				current.append(SEGMENT_SEPARATOR).append(segment);
+			}
+		}
+		eof = true;
+		return complete();
+	}
+
+	private void start(String msh) {
+		current = new StringBuilder(msh);
+		currentLine = lineNumber;
+		currentFileHeader = fileHeader;
+		currentBatchHeader = batchHeader;
+	}
+
+	private BatchMessage complete() {
+		if (current == null) {
+			return null;
+		}
+		BatchMessage m = new BatchMessage(index++, currentLine, current.toString(), currentFileHeader,
+				currentBatchHeader);
+		current = null;
+		return m;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return the number of BHS segments read so far
+	 */
+	public int getBatchCount() {
+		return batches;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
@@ -0,0 +1,313 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Splits an ER7 message into its segments, fields, components and sub-components without a
+ * conformance profile. The elements are recorded as offsets into the characters of the message:
+ * no substring is created until a value is asked for. The separators are read from MSH-1 and
+ * MSH-2 of the first MSH segment, the standard ones are used when the message has none.
+ *
+ * @author Harold Affo
+ *
+ */
+public class Er7Tokenizer {
+
+	public static final int SEGMENT = 0;
+	public static final int FIELD = 1;
+	public static final int COMPONENT = 2;
+	public static final int SUB_COMPONENT = 3;
+
+	// level, start, end, parent, position, instance, line, column
+	private static final int RECORD = 8;
+
+	private static final char[] DEFAULT_ENCODING = { '^', '~', '\\', '&' };
+
+	/**
+	 * The elements of a tokenized message, in document order. An element is identified by its
+	 * index, its parent always comes before it.
+	 */
+	public static class Tokens {
+		private final char[] chars;
+		private final char[] separators;
+		private int[] data;
+		private int count;
+
+		Tokens(char[] chars, char[] separators) {
+			this.chars = chars;
+			this.separators = separators;
+			this.data = new int[RECORD * 64];
+		}
+
+		int add(int level, int start, int end, int parent, int position, int instance, int line, int column) {
+			if ((count + 1) * RECORD > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			int i = count * RECORD;
+			data[i] = level;
+			data[i + 1] = start;
+			data[i + 2] = end;
+			data[i + 3] = parent;
+			data[i + 4] = position;
+			data[i + 5] = instance;
+			data[i + 6] = line;
+			data[i + 7] = column;
+			return count++;
+		}
+
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * @return {@link Er7Tokenizer#SEGMENT}, {@link Er7Tokenizer#FIELD},
+		 *         {@link Er7Tokenizer#COMPONENT} or {@link Er7Tokenizer#SUB_COMPONENT}
+		 */
+		public int level(int index) {
+			return data[index * RECORD];
+		}
+
+		/**
+		 * @return the offset of the first character of the element
+		 */
+		public int start(int index) {
+			return data[index * RECORD + 1];
+		}
+
+		/**
+		 * @return the offset after the last character of the element
+		 */
+		public int end(int index) {
+			return data[index * RECORD + 2];
+		}
+
+		/**
+		 * @return the index of the parent element or -1 for a segment
+		 */
+		public int parent(int index) {
+			return data[index * RECORD + 3];
+		}
+
+		/**
+		 * @return the position of the element in its parent, starting at 1. The position of a
+		 *         segment is its rank in the message.
+		 */
+		public int position(int index) {
+			return data[index * RECORD + 4];
+		}
+
+		/**
+		 * @return the repetition of a field or the occurrence of a segment, starting at 1
+		 */
+		public int instance(int index) {
+			return data[index * RECORD + 5];
+		}
+
+		public int line(int index) {
+			return data[index * RECORD + 6];
+		}
+
+		public int column(int index) {
+			return data[index * RECORD + 7];
+		}
+
+		/**
+		 * @return the raw text of the element
+		 */
+		public String value(int index) {
+			return new String(chars, start(index), end(index) - start(index));
+		}
+
+		/**
+		 * @return the segment id of a segment
+		 */
+		public String name(int index) {
+			return new String(chars, start(index), Math.min(3, end(index) - start(index)));
+		}
+
+		public char[] getChars() {
+			return chars;
+		}
+
+		public char getFieldSeparator() {
+			return separators[0];
+		}
+
+		public char getComponentSeparator() {
+			return separators[1];
+		}
+
+		public char getRepetitionSeparator() {
+			return separators[2];
+		}
+
+		public char getEscapeCharacter() {
+			return separators[3];
+		}
+
+		public char getSubComponentSeparator() {
+			return separators[4];
+		}
+
+		/**
+		 * @return the truncation character or 0 when MSH-2 has none
+		 */
+		public char getTruncationCharacter() {
+			return separators[5];
+		}
+	}
+
+	public static Tokens tokenize(String message) {
+		return tokenize(message.toCharArray());
+	}
+
+	/**
+	 *
+	 * @param chars
+	 *            : the message, kept by the returned tokens
+	 * @return
+	 */
+	public static Tokens tokenize(char[] chars) {
+		Tokens tokens = new Tokens(chars, separators(chars));
+		Map<Long, Integer> occurrences = new HashMap<Long, Integer>();
+		int n = chars.length;
+		int line = 1;
+		int position = 0;
+		int start = 0;
+		while (start < n) {
+			int end = start;
+			while (end < n && chars[end] != '\r' && chars[end] != '\n') {
+				end++;
+			}
+			if (end > start && !isBlank(chars, start, end)) {
+				// the segment id packed in a long, to count the occurrences without a substring
+				long id = end - start < 3 ? -1
+						: ((long) chars[start] << 32) | ((long) chars[start + 1] << 16) | chars[start + 2];
+				Integer previous = occurrences.get(id);
+				int instance = previous == null ? 1 : previous + 1;
+				occurrences.put(id, instance);
+				int segment = tokens.add(SEGMENT, start, end, -1, ++position, instance, line, 1);
+				fields(tokens, segment, start, end, line);
+			}
+			if (end + 1 < n && chars[end] == '\r' && chars[end + 1] == '\n') {
+				end++;
+			}
+			start = end + 1;
+			line++;
+		}
+		return tokens;
+	}
+
+	private static void fields(Tokens tokens, int segment, int start, int end, int line) {
+		char[] chars = tokens.chars;
+		char fieldSeparator = tokens.getFieldSeparator();
+		if (end - start < 4 || chars[start + 3] != fieldSeparator) {
+			return;
+		}
+		int position = 1;
+		int from = start + 4;
+		if (chars[start] == 'M' && chars[start + 1] == 'S' && chars[start + 2] == 'H') {
+			// MSH-1 is the field separator itself and MSH-2 holds the encoding characters
+			tokens.add(FIELD, start + 3, start + 4, segment, 1, 1, line, 4);
+			int to = indexOf(chars, fieldSeparator, from, end);
+			if (to > from) {
+				tokens.add(FIELD, from, to, segment, 2, 1, line, from - start + 1);
+			}
+			position = 3;
+			from = to + 1;
+		}
+		while (from <= end) {
+			int to = indexOf(chars, fieldSeparator, from, end);
+			int instance = 1;
+			int repetition = from;
+			while (repetition <= to) {
+				int next = indexOf(chars, tokens.getRepetitionSeparator(), repetition, to);
+				if (next > repetition) {
+					int field = tokens.add(FIELD, repetition, next, segment, position, instance, line,
+							repetition - start + 1);
+					children(tokens, field, COMPONENT, tokens.getComponentSeparator(), repetition, next, start, line);
+				}
+				instance++;
+				repetition = next + 1;
+			}
+			position++;
+			from = to + 1;
+		}
+	}
+
+	private static void children(Tokens tokens, int parent, int level, char separator, int from, int to,
+			int lineStart, int line) {
+		if (indexOf(tokens.chars, separator, from, to) == to) {
+			return;
+		}
+		int position = 1;
+		while (from <= to) {
+			int next = indexOf(tokens.chars, separator, from, to);
+			if (next > from) {
+				int child = tokens.add(level, from, next, parent, position, 1, line, from - lineStart + 1);
+				if (level == COMPONENT) {
+					children(tokens, child, SUB_COMPONENT, tokens.getSubComponentSeparator(), from, next, lineStart,
+							line);
+				}
+			}
+			position++;
+			from = next + 1;
+		}
+	}
+
+	private static char[] separators(char[] chars) {
+		char[] separators = { '|', DEFAULT_ENCODING[0], DEFAULT_ENCODING[1], DEFAULT_ENCODING[2],
+				DEFAULT_ENCODING[3], 0 };
+		int msh = -1;
+		for (int i = 0; i + 3 < chars.length && msh < 0; i++) {
+			if (chars[i] == 'M' && chars[i + 1] == 'S' && chars[i + 2] == 'H'
+					&& (i == 0 || chars[i - 1] == '\r' || chars[i - 1] == '\n')) {
+				msh = i;
+			}
+		}
+		if (msh < 0) {
+			return separators;
+		}
+		separators[0] = chars[msh + 3];
+		for (int i = 0; i < 5 && msh + 4 + i < chars.length; i++) {
+			char c = chars[msh + 4 + i];
+			if (c == separators[0] || c == '\r' || c == '\n') {
+				break;
+			}
+			separators[i + 1] = c;
+		}
+		return separators;
+	}
+
+	private static int indexOf(char[] chars, char c, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (chars[i] == c) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	private static boolean isBlank(char[] chars, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(chars[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
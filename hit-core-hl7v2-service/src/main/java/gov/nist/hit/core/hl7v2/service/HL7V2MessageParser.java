@@ -11,20 +11,49 @@
  */
 package gov.nist.hit.core.hl7v2.service;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import gov.nist.hit.core.domain.MessageElement;
 import gov.nist.hit.core.domain.MessageModel;
 import gov.nist.hit.core.domain.MessageParserCommand;
 import gov.nist.hit.core.domain.TestContext;
+import gov.nist.hit.core.hl7v2.domain.BatchParseItem;
+import gov.nist.hit.core.hl7v2.domain.BatchParseResult;
+import gov.nist.hit.core.hl7v2.domain.CompactMessageModel;
+import gov.nist.hit.core.hl7v2.domain.CompactMessageNode;
 import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
+import gov.nist.hit.core.hl7v2.domain.LazyMessageModel;
 import gov.nist.hit.core.hl7v2.domain.MessageElementData;
+import gov.nist.hit.core.hl7v2.domain.MessageSegment;
 import gov.nist.hit.core.hl7v2.domain.util.Util;
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.NamedThreadFactory;
 import gov.nist.hit.core.service.MessageParser;
 import gov.nist.hit.core.service.exception.MessageParserException;
 import hl7.v2.instance.ComplexComponent;
@@ -71,6 +100,22 @@ public abstract class HL7V2MessageParser implements MessageParser {
 	private final static String CONTINUATION_SEPERATOR = "continuation_separator";
 	private final static String SEGMENT_SEPERATOR = "segment_separator";
 	private final static String OTHER_SEPERATOR = "other_separator";
+	private final static String[] STRUCTURE_NODES = { MessageTreeWalker.NODE_SEGMENT,
+			MessageTreeWalker.NODE_FIELD, MessageTreeWalker.NODE_COMPONENT, MessageTreeWalker.NODE_SUB_COMPONENT };
+
+	private final static JsonFactory jsonFactory = new JsonFactory();
+
+	private final ParsedMessageCache parsedMessageCache = new ParsedMessageCache(200, 10 * 60 * 1000L);
+
+	private int batchParallelism = Runtime.getRuntime().availableProcessors();
+
+	private ExecutorService batchExecutor;
+
+	@Autowired(required = false)
+	private ValidationMetrics validationMetrics;
+
+	@Autowired(required = false)
+	private ProfileCache profileCache;
 
 	/**  
 	 *  
@@ -78,27 +123,17 @@ public abstract class HL7V2MessageParser implements MessageParser {
 	@Override
 	public MessageModel parse(TestContext context, MessageParserCommand command) throws MessageParserException {
 		try {
-			if (context instanceof HL7V2TestContext) {
-				HL7V2TestContext testContext = (HL7V2TestContext) context;
-				String er7Message = command.getContent();
-				String profileXml = testContext.getConformanceProfile().getXml();
-				if (profileXml == null) {
-					throw new MessageParserException("No Conformance Profile Provided to Parse the Message");
-				}
-				String conformanceProfileId = testContext.getConformanceProfile().getSourceId();
-				if (!"".equals(er7Message) && er7Message != null && !"".equals(conformanceProfileId)) {
-					InputStream profileStream = IOUtils.toInputStream(profileXml);
-					Profile profile = XMLDeserializer.deserialize(profileStream).get();
-					JParser p = new JParser();
-					Message message = p.jparse(er7Message, profile.getMessage(conformanceProfileId));
-					return parse(message, er7Message);
-				}
-			} else {
-				throw new MessageParserException(
-						"Invalid Context Provided. Expected Context is HL7V2TestContext but found "
-								+ context.getClass().getSimpleName());
+			HL7V2TestContext testContext = toHL7V2TestContext(context);
+			String er7Message = command.getContent();
+			Message message = parseTransient(testContext, er7Message);
+			if (message != null) {
+				long start = System.nanoTime();
+				MessageModel model = parse(message, er7Message);
+				recordStage(ValidationMetrics.MESSAGE_MODEL, testContext, start);
+				return model;
 			}
-
+		} catch (MessageParserException e) {
+			throw e;
 		} catch (RuntimeException e) {
 			throw new MessageParserException(e.getMessage());
 		} catch (Exception e) {
@@ -107,6 +142,498 @@ public abstract class HL7V2MessageParser implements MessageParser {
 		return new MessageModel();
 	}
 
+	/**
+	 * Parses the message into the compact model: leaf values are folded into their node, the
+	 * repeated strings are shared and positions are primitives
+	 * 
+	 * @param context
+	 * @param command
+	 * @return
+	 * @throws MessageParserException
+	 */
+	public CompactMessageModel parseCompact(TestContext context, MessageParserCommand command)
+			throws MessageParserException {
+		try {
+			HL7V2TestContext testContext = toHL7V2TestContext(context);
+			Message message = parseTransient(testContext, command.getContent());
+			if (message != null) {
+				long start = System.nanoTime();
+				CompactMessageModel model = new CompactModelBuilder().build(message);
+				model.setDelimeters(getDelimeters(message.separators()));
+				recordStage(ValidationMetrics.MESSAGE_MODEL, testContext, start);
+				return model;
+			}
+		} catch (MessageParserException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new MessageParserException(e.getMessage());
+		} catch (Exception e) {
+			throw new MessageParserException(e.getMessage());
+		}
+		return new CompactMessageModel();
+	}
+
+	/**
+	 * Parses the message and returns its segments only, with a handle to expand them with
+	 * {@link #expand(String, String)} while the parsed message stays in the cache
+	 * 
+	 * @param context
+	 * @param command
+	 * @return
+	 * @throws MessageParserException
+	 */
+	public LazyMessageModel parseLazy(TestContext context, MessageParserCommand command)
+			throws MessageParserException {
+		try {
+			HL7V2TestContext testContext = toHL7V2TestContext(context);
+			String er7Message = command.getContent();
+			ParsedMessage parsed = parseAndKeep(testContext, er7Message);
+			if (parsed == null) {
+				return new LazyMessageModel();
+			}
+			long start = System.nanoTime();
+			CompactModelBuilder builder = new CompactModelBuilder();
+			java.util.List<CompactMessageNode> elements = new ArrayList<CompactMessageNode>(
+					parsed.getSegments().size());
+			for (Segment segment : parsed.getSegments().values()) {
+				elements.add(builder.segment(segment, false));
+			}
+			recordStage(ValidationMetrics.MESSAGE_MODEL, testContext, start);
+			return new LazyMessageModel(parsed.getHandle(), elements, parsed.getDelimeters());
+		} catch (MessageParserException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw new MessageParserException(e.getMessage());
+		} catch (Exception e) {
+			throw new MessageParserException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the direct children of the element at the uid path of a message parsed with
+	 * {@link #parseLazy(TestContext, MessageParserCommand)}
+	 * 
+	 * @param handle
+	 * @param uidPath
+	 * @return
+	 * @throws MessageParserException
+	 *             when the handle is unknown or expired, or no element has the path
+	 */
+	public java.util.List<CompactMessageNode> expand(String handle, String uidPath) throws MessageParserException {
+		ParsedMessage parsed = parsedMessageCache.get(handle);
+		if (parsed == null) {
+			throw new MessageParserException("Parsed message " + handle + " not found or expired");
+		}
+		Object element = parsed.find(uidPath);
+		if (element == null) {
+			throw new MessageParserException("No element found at " + uidPath);
+		}
+		return new CompactModelBuilder().children(element);
+	}
+
+	/**
+	 * Parses each message of a multi-message upload against the conformance profile of the test
+	 * context. The messages are split on MSH segments, the profile is resolved once and shared by
+	 * the messages, which are parsed in parallel on the batch worker pool. At most twice the batch
+	 * parallelism messages are read ahead of the oldest unfinished one. A message that cannot be
+	 * parsed is reported as failed and does not fail the others.
+	 * 
+	 * @param context
+	 * @param messages
+	 *            : the upload, read until its end but not closed
+	 * @return the results in input order
+	 * @throws MessageParserException
+	 *             when the profile cannot be resolved or the upload cannot be read
+	 */
+	public BatchParseResult parseAll(TestContext context, Reader messages) throws MessageParserException {
+		final HL7V2TestContext testContext = toHL7V2TestContext(context);
+		if (testContext.getConformanceProfile().getXml() == null) {
+			throw new MessageParserException("No Conformance Profile Provided to Parse the Message");
+		}
+		final hl7.v2.profile.Message messageProfile;
+		try {
+			Profile profile = getProfile(testContext);
+			messageProfile = profile.getMessage(testContext.getConformanceProfile().getSourceId());
+		} catch (RuntimeException e) {
+			throw new MessageParserException(e.getMessage());
+		} catch (Exception e) {
+			throw new MessageParserException(e.getMessage());
+		}
+		long start = System.currentTimeMillis();
+		int window = batchParallelism * 2;
+		Deque<Future<BatchParseItem>> futures = new ArrayDeque<Future<BatchParseItem>>(window);
+		Er7BatchReader reader = new Er7BatchReader(messages);
+		ExecutorService executor = getBatchExecutor();
+		BatchParseResult result = new BatchParseResult();
+		try {
+			while (reader.hasNext()) {
+				if (futures.size() >= window) {
+					collect(result, futures.poll().get());
+				}
+				final Er7BatchReader.BatchMessage message = reader.next();
+				futures.add(executor.submit(new Callable<BatchParseItem>() {
+					@Override
+					public BatchParseItem call() {
+						BatchParseItem item = parseBatchItem(testContext, messageProfile, message);
+						item.setLine(message.getLine() > 0 ? message.getLine() : null);
+						return item;
+					}
+				}));
+			}
+			while (!futures.isEmpty()) {
+				collect(result, futures.poll().get());
+			}
+			result.setParallelism(batchParallelism);
+			result.setElapsedMillis(System.currentTimeMillis() - start);
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageParserException("Batch parse interrupted");
+		} catch (ExecutionException e) {
+			throw new MessageParserException(e.getCause().getMessage());
+		} catch (UncheckedIOException e) {
+			throw new MessageParserException("Failed to read the messages: " + e.getCause().getMessage());
+		} finally {
+			for (Future<BatchParseItem> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private void collect(BatchParseResult result, BatchParseItem item) {
+		if (item.getStatus() == BatchParseItem.Status.FAILED) {
+			result.setFailed(result.getFailed() + 1);
+		}
+		result.getItems().add(item);
+	}
+
+	private BatchParseItem parseBatchItem(HL7V2TestContext testContext, hl7.v2.profile.Message messageProfile,
+			Er7BatchReader.BatchMessage message) {
+		long start = System.currentTimeMillis();
+		try {
+			long parseStart = System.nanoTime();
+			Message instance = new JParser().jparse(message.getContent(), messageProfile);
+			recordStage(ValidationMetrics.MESSAGE_PARSE, testContext, parseStart);
+			return new BatchParseItem(message.getIndex(), BatchParseItem.Status.PARSED,
+					parse(instance, message.getContent()), null, System.currentTimeMillis() - start);
+		} catch (Exception e) {
+			return new BatchParseItem(message.getIndex(), BatchParseItem.Status.FAILED, null, e.getMessage(),
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	protected synchronized ExecutorService getBatchExecutor() {
+		if (batchExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(batchParallelism, batchParallelism, 60L,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("hl7v2-batch-parse"));
+			executor.allowCoreThreadTimeOut(true);
+			batchExecutor = executor;
+		}
+		return batchExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (batchExecutor != null) {
+			batchExecutor.shutdownNow();
+			batchExecutor = null;
+		}
+	}
+
+	/**
+	 * Returns a segment of a message parsed with
+	 * {@link #parseLazy(TestContext, MessageParserCommand)}, found through the segment index of
+	 * the parsed message by line or by id and occurrence
+	 * 
+	 * @param handle
+	 * @param line
+	 *            : the line of the segment, or null to use the id and occurrence
+	 * @param id
+	 * @param occurrence
+	 *            : starting at 1
+	 * @param tree
+	 *            : true to include the parsed subtree of the segment
+	 * @return
+	 * @throws MessageParserException
+	 *             when the handle is unknown or expired, or the message has no such segment
+	 */
+	public MessageSegment segment(String handle, Integer line, String id, int occurrence, boolean tree)
+			throws MessageParserException {
+		ParsedMessage parsed = parsedMessageCache.get(handle);
+		if (parsed == null) {
+			throw new MessageParserException("Parsed message " + handle + " not found or expired");
+		}
+		SegmentIndex index = parsed.getSegmentIndex();
+		int i = line != null ? index.findByLine(line) : index.find(id, occurrence);
+		if (i < 0) {
+			throw new MessageParserException(
+					"No segment found at " + (line != null ? "line " + line : id + "[" + occurrence + "]"));
+		}
+		MessageSegment segment = new MessageSegment(index.getId(i), index.getOccurrence(i), index.getOffset(i),
+				index.getLine(i), index.getRaw(i));
+		if (tree) {
+			Segment s = parsed.findSegment(index.getLine(i));
+			if (s != null) {
+				segment.setTree(new CompactModelBuilder().segment(s, true));
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Parses the message and writes it to the output as json in the compact model shape, without
+	 * materializing the tree. The parse is not kept in the parsed message cache.
+	 * 
+	 * @param context
+	 * @param command
+	 * @param out
+	 * @throws MessageParserException
+	 *             when the message cannot be parsed, before anything is written
+	 * @throws IOException
+	 */
+	public void writeJson(TestContext context, MessageParserCommand command, OutputStream out)
+			throws MessageParserException, IOException {
+		HL7V2TestContext testContext = toHL7V2TestContext(context);
+		Message message;
+		try {
+			message = parseTransient(testContext, command.getContent());
+		} catch (MessageParserException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new MessageParserException(e.getMessage());
+		}
+		JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+		try {
+			if (message == null) {
+				generator.writeStartObject();
+				generator.writeEndObject();
+			} else {
+				long start = System.nanoTime();
+				new MessageTreeJsonWriter(generator).write(message, getDelimeters(message.separators()));
+				recordStage(ValidationMetrics.MESSAGE_MODEL, testContext, start);
+			}
+		} finally {
+			generator.close();
+		}
+	}
+
+	/**
+	 * Splits the message into its segments, fields, components and sub-components without a
+	 * conformance profile, for instance before a profile is selected or when it cannot be parsed.
+	 * The nodes have no name, usage nor cardinality; leaves hold their raw value.
+	 * 
+	 * @param command
+	 * @return
+	 */
+	public CompactMessageModel parseStructure(MessageParserCommand command) {
+		String er7Message = command.getContent();
+		if (er7Message == null || "".equals(er7Message)) {
+			return new CompactMessageModel();
+		}
+		Er7Tokenizer.Tokens tokens = Er7Tokenizer.tokenize(er7Message);
+		CompactMessageNode[] nodes = new CompactMessageNode[tokens.size()];
+		String[] paths = new String[tokens.size()];
+		java.util.List<CompactMessageNode> elements = new ArrayList<CompactMessageNode>();
+		for (int i = 0; i < tokens.size(); i++) {
+			int parent = tokens.parent(i);
+			int level = tokens.level(i);
+			String name = level == Er7Tokenizer.SEGMENT ? tokens.name(i) : null;
+			String prefix = parent < 0 ? name : paths[parent] + ".";
+			paths[i] = prefix + (parent < 0 ? "" : tokens.position(i)) + "[" + tokens.instance(i) + "]";
+			nodes[i] = new CompactMessageNode(STRUCTURE_NODES[level], name, paths[i], null, -1, null,
+					tokens.line(i), tokens.column(i), tokens.position(i), tokens.instance(i));
+			if (parent < 0) {
+				elements.add(nodes[i]);
+			} else {
+				nodes[parent].addChild(nodes[i]);
+			}
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i].getChildren() == null && tokens.level(i) != Er7Tokenizer.SEGMENT) {
+				nodes[i].setValue(tokens.value(i));
+			}
+		}
+		return new CompactMessageModel(elements, getDelimeters(tokens));
+	}
+
+	private HL7V2TestContext toHL7V2TestContext(TestContext context) throws MessageParserException {
+		if (context instanceof HL7V2TestContext) {
+			return (HL7V2TestContext) context;
+		}
+		throw new MessageParserException("Invalid Context Provided. Expected Context is HL7V2TestContext but found "
+				+ context.getClass().getSimpleName());
+	}
+
+	/**
+	 * Returns the parse of the message against the conformance profile of the test context and
+	 * keeps it in the parsed message cache, so that the lazy view can be expanded by handle. The
+	 * handle of the parse is the cache key, a digest of the message and the profile. The other
+	 * views do not add to the cache, see {@link #parseTransient(HL7V2TestContext, String)}.
+	 * 
+	 * @param testContext
+	 * @param er7Message
+	 * @return the parsed message or null when there is no message or conformance profile id
+	 * @throws Exception
+	 */
+	protected ParsedMessage parseAndKeep(final HL7V2TestContext testContext, final String er7Message)
+			throws Exception {
+		String key = parseKey(testContext, er7Message);
+		if (key == null) {
+			return null;
+		}
+		final String conformanceProfileId = testContext.getConformanceProfile().getSourceId();
+		return parsedMessageCache.get(key, new BoundedCache.Loader<String, ParsedMessage>() {
+			@Override
+			public ParsedMessage load(String key) throws Exception {
+				Message message = jparse(testContext, er7Message);
+				return new ParsedMessage(key, conformanceProfileId, er7Message, message,
+						getDelimeters(message.separators()));
+			}
+		});
+	}
+
+	/**
+	 * Returns the message already kept in the parsed message cache, or parses it without adding it
+	 * to the cache
+	 * 
+	 * @param testContext
+	 * @param er7Message
+	 * @return the message instance or null when there is no message or conformance profile id
+	 * @throws Exception
+	 */
+	protected Message parseTransient(HL7V2TestContext testContext, String er7Message) throws Exception {
+		String key = parseKey(testContext, er7Message);
+		if (key == null) {
+			return null;
+		}
+		ParsedMessage kept = parsedMessageCache.get(key);
+		return kept != null ? kept.getMessage() : jparse(testContext, er7Message);
+	}
+
+	/**
+	 * 
+	 * @param testContext
+	 * @param er7Message
+	 * @return the key of the parse in the parsed message cache, a digest of the message and the
+	 *         profile, or null when there is no message or conformance profile id
+	 * @throws MessageParserException
+	 *             when the test context has no conformance profile xml
+	 */
+	private String parseKey(HL7V2TestContext testContext, String er7Message) throws MessageParserException {
+		String profileXml = testContext.getConformanceProfile().getXml();
+		if (profileXml == null) {
+			throw new MessageParserException("No Conformance Profile Provided to Parse the Message");
+		}
+		String conformanceProfileId = testContext.getConformanceProfile().getSourceId();
+		if ("".equals(er7Message) || er7Message == null || "".equals(conformanceProfileId)) {
+			return null;
+		}
+		return HL7V2Util.sha256(HL7V2Util.fingerprint(conformanceProfileId, profileXml) + "|" + er7Message);
+	}
+
+	/**
+	 * Parses the message against the conformance profile of the test context
+	 * 
+	 * @param testContext
+	 * @param er7Message
+	 * @return the message instance or null when there is no message or conformance profile id
+	 * @throws Exception
+	 */
+	protected Message jparse(HL7V2TestContext testContext, String er7Message) throws Exception {
+		String profileXml = testContext.getConformanceProfile().getXml();
+		if (profileXml == null) {
+			throw new MessageParserException("No Conformance Profile Provided to Parse the Message");
+		}
+		String conformanceProfileId = testContext.getConformanceProfile().getSourceId();
+		if (!"".equals(er7Message) && er7Message != null && !"".equals(conformanceProfileId)) {
+			Profile profile = getProfile(testContext);
+			long start = System.nanoTime();
+			JParser p = new JParser();
+			Message message = p.jparse(er7Message, profile.getMessage(conformanceProfileId));
+			recordStage(ValidationMetrics.MESSAGE_PARSE, testContext, start);
+			return message;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the deserialized conformance profile of the test context, from the shared profile
+	 * cache when there is one
+	 * 
+	 * @param testContext
+	 * @return
+	 * @throws Exception
+	 */
+	protected Profile getProfile(HL7V2TestContext testContext) throws Exception {
+		String conformanceProfileId = testContext.getConformanceProfile().getSourceId();
+		String profileXml = testContext.getConformanceProfile().getXml();
+		if (profileCache != null) {
+			return profileCache.getProfile(conformanceProfileId, profileXml);
+		}
+		long start = System.nanoTime();
+		InputStream profileStream = IOUtils.toInputStream(profileXml);
+		Profile profile = XMLDeserializer.deserialize(profileStream).get();
+		recordStage(ValidationMetrics.PROFILE_DESERIALIZATION, testContext, start);
+		return profile;
+	}
+
+	private void recordStage(String stage, HL7V2TestContext testContext, long start) {
+		if (validationMetrics != null) {
+			validationMetrics.record(stage, testContext.getId(), testContext.getConformanceProfile().getSourceId(),
+					System.nanoTime() - start);
+		}
+	}
+
+	public ValidationMetrics getValidationMetrics() {
+		return validationMetrics;
+	}
+
+	public void setValidationMetrics(ValidationMetrics validationMetrics) {
+		this.validationMetrics = validationMetrics;
+	}
+
+	public ParsedMessageCache getParsedMessageCache() {
+		return parsedMessageCache;
+	}
+
+	@Value("${hl7v2.parser.cache.maxSize:200}")
+	public void setParsedMessageCacheSize(int maxSize) {
+		parsedMessageCache.setMaxSize(maxSize);
+	}
+
+	@Value("${hl7v2.parser.cache.ttlMillis:600000}")
+	public void setParsedMessageCacheTtlMillis(long ttlMillis) {
+		parsedMessageCache.setTtlMillis(ttlMillis);
+	}
+
+	public int getBatchParallelism() {
+		return batchParallelism;
+	}
+
+	/**
+	 * 
+	 * @param batchParallelism
+	 *            : number of messages of an upload parsed at the same time, at most the number of
+	 *            cores
+	 */
+	@Value("${hl7v2.parser.batch.parallelism:0}")
+	public synchronized void setBatchParallelism(int batchParallelism) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		this.batchParallelism = batchParallelism > 0 ? Math.min(batchParallelism, cores) : cores;
+		if (batchExecutor != null) {
+			batchExecutor.shutdown();
+			batchExecutor = null;
+		}
+	}
+
+	public ProfileCache getProfileCache() {
+		return profileCache;
+	}
+
+	public void setProfileCache(ProfileCache profileCache) {
+		this.profileCache = profileCache;
+	}
+
 	/**
 	 * 
 	 * @param message
@@ -124,6 +651,19 @@ public abstract class HL7V2MessageParser implements MessageParser {
 		return new MessageModel(root.getChildren(), getDelimeters(message.separators()));
 	}
 
+	private Map<String, String> getDelimeters(Er7Tokenizer.Tokens tokens) {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put(FIELD_SEPERATOR, String.valueOf(tokens.getFieldSeparator()));
+		map.put(COMPONENT_SEPERATOR, String.valueOf(tokens.getComponentSeparator()));
+		map.put(REPETITION_SEPERATOR, String.valueOf(tokens.getRepetitionSeparator()));
+		map.put(CONTINUATION_SEPERATOR, String.valueOf(tokens.getEscapeCharacter()));
+		map.put(SUBCOMPONENT_SEPERATOR, String.valueOf(tokens.getSubComponentSeparator()));
+		if (tokens.getTruncationCharacter() != 0)
+			map.put(OTHER_SEPERATOR, String.valueOf(tokens.getTruncationCharacter()));
+		map.put(SEGMENT_SEPERATOR, "\n");
+		return map;
+	}
+
 	private Map<String, String> getDelimeters(Separators separators) {
 		Map<String, String> map = new HashMap<String, String>();
 		java.util.List<Object> list = new ArrayList<Object>();
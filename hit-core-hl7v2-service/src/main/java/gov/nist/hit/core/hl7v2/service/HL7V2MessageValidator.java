@@ -12,12 +12,34 @@
 package gov.nist.hit.core.hl7v2.service;
 
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PreDestroy;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import gov.nist.healthcare.unified.enums.Context;
 import gov.nist.healthcare.unified.model.EnhancedReport;
@@ -25,7 +47,17 @@ import gov.nist.healthcare.unified.proxy.ValidationProxy;
 import gov.nist.hit.core.domain.MessageValidationCommand;
 import gov.nist.hit.core.domain.MessageValidationResult;
 import gov.nist.hit.core.domain.TestContext;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationCommand;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationItem;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationResult;
+import gov.nist.hit.core.hl7v2.domain.BatchValidationSummary;
+import gov.nist.hit.core.hl7v2.domain.HL7V2MessageValidationCommand;
+import gov.nist.hit.core.hl7v2.domain.HL7V2MessageValidationResult;
 import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.exception.ValidationTimeoutException;
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
 import gov.nist.hit.core.service.MessageValidator;
 import gov.nist.hit.core.service.ValidationLogService;
 import gov.nist.hit.core.service.exception.MessageException;
@@ -37,21 +69,182 @@ import hl7.v2.validation.vs.ValueSetLibraryImpl;
 
 public abstract class HL7V2MessageValidator implements MessageValidator {
 
+	static final Logger logger = LoggerFactory.getLogger(HL7V2MessageValidator.class);
+
+	private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+	static {
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
 	@Autowired
 	private ValidationLogService validationLogService;
 
+	@Autowired(required = false)
+	private ValidationMetrics validationMetrics;
+
+	@Autowired(required = false)
+	private HL7V2TestContextRepository testContextRepository;
+
+	@Autowired(required = false)
+	@Qualifier("transactionManager")
+	private PlatformTransactionManager transactionManager;
+
+	private boolean asyncValidationLog = true;
+
+	private int validationLogQueueCapacity = 10000;
+
+	private int validationLogBatchSize = 50;
+
+	private AsyncValidationLogWriter.OverflowPolicy validationLogOverflowPolicy = AsyncValidationLogWriter.OverflowPolicy.BLOCK;
+
+	private int validationLogSampleRate = 10;
+
+	private AsyncValidationLogWriter validationLogWriter;
+
+	private int batchMaxParallelism = Runtime.getRuntime().availableProcessors();
+
+	private long batchTimeoutMillis = 30000;
+
+	private boolean eagerHtmlReport = true;
+
+	private final ValidationReportStore reportStore = new ValidationReportStore(1000, 30 * 60 * 1000L);
+
+	private boolean resultCacheEnabled = false;
+
+	private final ValidationResultCache resultCache = new ValidationResultCache(10000, 10 * 60 * 1000L);
+
+	private final BoundedCache<ValidationContextKey, CompiledValidationContext> validationContextCache = new BoundedCache<ValidationContextKey, CompiledValidationContext>(
+			"validationContexts", 256, 0);
+
+	private boolean executorEnabled = true;
+
+	private int executorConcurrency = Runtime.getRuntime().availableProcessors();
+
+	private int executorQueueCapacity = 100;
+
+	private long validationTimeoutMillis = 60000;
+
+	private ValidationExecutor validationExecutor;
+
+	/**
+	 * Validates the message on the validation executor, waiting at most the validation timeout
+	 * for the result
+	 */
 	@Override
-	public MessageValidationResult validate(TestContext testContext, MessageValidationCommand command)
+	public MessageValidationResult validate(final TestContext testContext, final MessageValidationCommand command)
+			throws MessageValidationException {
+		return execute(new Callable<MessageValidationResult>() {
+			@Override
+			public MessageValidationResult call() throws Exception {
+				return doValidate(testContext, command);
+			}
+		});
+	}
+
+	/**
+	 * Validates the message and only reports its first errors, without the html report
+	 *
+	 * @param testContext
+	 * @param command
+	 * @param maxErrors
+	 *            : number of errors reported, 0 or less for all of them
+	 * @return
+	 * @throws MessageValidationException
+	 */
+	public MessageValidationResult validateErrorsOnly(final TestContext testContext,
+			final MessageValidationCommand command, final int maxErrors) throws MessageValidationException {
+		return execute(new Callable<MessageValidationResult>() {
+			@Override
+			public MessageValidationResult call() throws Exception {
+				return doValidate(testContext, command, true, maxErrors);
+			}
+		});
+	}
+
+	private MessageValidationResult execute(Callable<MessageValidationResult> task)
 			throws MessageValidationException {
 		try {
-			EnhancedReport report = generateReport(testContext, command);
+			if (!executorEnabled) {
+				return task.call();
+			}
+			return getValidationExecutor().execute(task, validationTimeoutMillis);
+		} catch (MessageValidationException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new MessageValidationException(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Validates the message on the validation executor without blocking the caller
+	 *
+	 * @param testContext
+	 * @param command
+	 * @return a future completed with the result, or exceptionally with a
+	 *         {@link MessageValidationException}
+	 */
+	public CompletableFuture<MessageValidationResult> validateAsync(final TestContext testContext,
+			final MessageValidationCommand command) {
+		Callable<MessageValidationResult> task = new Callable<MessageValidationResult>() {
+			@Override
+			public MessageValidationResult call() throws Exception {
+				return doValidate(testContext, command);
+			}
+		};
+		if (!executorEnabled) {
+			CompletableFuture<MessageValidationResult> result = new CompletableFuture<MessageValidationResult>();
+			try {
+				result.complete(task.call());
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+			return result;
+		}
+		return getValidationExecutor().executeAsync(task, validationTimeoutMillis);
+	}
+
+	protected MessageValidationResult doValidate(TestContext testContext, MessageValidationCommand command)
+			throws MessageValidationException {
+		if (command instanceof HL7V2MessageValidationCommand
+				&& ((HL7V2MessageValidationCommand) command).isErrorsOnly()) {
+			Integer maxErrors = ((HL7V2MessageValidationCommand) command).getMaxErrors();
+			return doValidate(testContext, command, true, maxErrors != null ? maxErrors : 0);
+		}
+		return doValidate(testContext, command, false, 0);
+	}
+
+	protected MessageValidationResult doValidate(TestContext testContext, MessageValidationCommand command,
+			boolean errorsOnly, int maxErrors) throws MessageValidationException {
+		try {
+			EnhancedReport report = validateMessage(testContext, command);
 			if (report != null) {
 				Map<String, String> nav = command.getNav();
 				if (nav != null && !nav.isEmpty()) {
 					report.setTestCase(nav.get("testPlan"), nav.get("testGroup"), nav.get("testCase"),
 							nav.get("testStep"));
 				}
-				return new MessageValidationResult(report.to("json").toString(), report.render("report", null));
+				long start = System.nanoTime();
+				if (errorsOnly) {
+					String full = report.to("json").toString();
+					String json = ValidationReportFilter.errorsOnly(full, maxErrors);
+					recordStage(ValidationMetrics.REPORT_RENDERING, testContext, start);
+					saveValidationLog(command.getUserId(), testContext, report);
+					return new HL7V2MessageValidationResult(json, null, null);
+				}
+				HL7V2MessageValidationResult result;
+				if (eagerHtmlReport) {
+					result = new HL7V2MessageValidationResult(report.to("json").toString(),
+							report.render("report", null), null);
+				} else {
+					// the HTML is fetched later by report id, only then is the report kept
+					ValidationReportHandle handle = reportStore.store(report);
+					result = new HL7V2MessageValidationResult(handle.json(), null, handle.getId());
+				}
+				recordStage(ValidationMetrics.REPORT_RENDERING, testContext, start);
+				saveValidationLog(command.getUserId(), testContext, report);
+				return result;
 			}
 			throw new MessageValidationException();
 		} catch (MessageException e) {
@@ -65,38 +258,22 @@ public abstract class HL7V2MessageValidator implements MessageValidator {
 
 	public EnhancedReport generateReport(TestContext testContext, MessageValidationCommand command)
 			throws MessageValidationException {
+		EnhancedReport report = validateMessage(testContext, command);
+		saveValidationLog(command.getUserId(), testContext, report);
+		return report;
+	}
+
+	private EnhancedReport validateMessage(TestContext testContext, MessageValidationCommand command)
+			throws MessageValidationException {
 		try {
 			if (testContext instanceof HL7V2TestContext) {
 				HL7V2TestContext v2TestContext = (HL7V2TestContext) testContext;
-				String contextType = command.getContextType();
 				String message = getMessageContent(command);
-				String conformanceProfielId = v2TestContext.getConformanceProfile().getSourceId();
-				String valueSets = v2TestContext.getVocabularyLibrary().getXml();
-				String c1 = v2TestContext.getConstraints() != null ? v2TestContext.getConstraints().getXml() : null;
-				String c2 = v2TestContext.getAddditionalConstraints() != null
-						? v2TestContext.getAddditionalConstraints().getXml() : null;
-				InputStream c1Stream = c1 != null ? IOUtils.toInputStream(c1) : null;
-				InputStream c2Stream = c2 != null ? IOUtils.toInputStream(c2) : null;
-				List<InputStream> cStreams = new ArrayList<InputStream>();
-				if (c1Stream != null)
-					cStreams.add(c1Stream);
-				if (c2Stream != null)
-					cStreams.add(c2Stream);
-				ConformanceContext c = getConformanceContext(cStreams);
-				ValueSetLibrary vsLib = valueSets != null ? getValueSetLibrary(IOUtils.toInputStream(valueSets)) : null;
-				ValidationProxy vp = new ValidationProxy(getValidationServiceName(), getProviderName());
-				EnhancedReport report = vp.validate(message, v2TestContext.getConformanceProfile().getXml(), c, vsLib,
-						conformanceProfielId, Context.valueOf(contextType));
-				if (report != null) {
-					Map<String, String> nav = command.getNav();
-					if (nav != null && !nav.isEmpty()) {
-						report.setTestCase(nav.get("testPlan"), nav.get("testGroup"), nav.get("testCase"),
-								nav.get("testStep"));
-					}
-				}
-
-				validationLogService.generateAndSave(command.getUserId(), testContext, report);
-				return report;
+				CompiledValidationContext compiled = getCompiledValidationContext(v2TestContext);
+				boolean bypassCache = command instanceof HL7V2MessageValidationCommand
+						&& ((HL7V2MessageValidationCommand) command).isBypassCache();
+				return generateReport(testContext, compiled, message, command.getContextType(), command.getNav(),
+						bypassCache);
 			}
 			throw new MessageValidationException();
 		} catch (MessageException e) {
@@ -108,6 +285,366 @@ public abstract class HL7V2MessageValidator implements MessageValidator {
 		}
 	}
 
+	/**
+	 * Validates a message against already compiled validation artifacts, or returns the report of
+	 * an identical previous validation when the result cache is enabled
+	 *
+	 * @param testContext
+	 * @param compiled
+	 * @param message
+	 * @param contextType
+	 * @param nav
+	 * @param bypassCache
+	 *            : validate even if a cached report exists
+	 * @return
+	 */
+	protected EnhancedReport generateReport(TestContext testContext, CompiledValidationContext compiled,
+			String message, String contextType, Map<String, String> nav, boolean bypassCache) throws Exception {
+		EnhancedReport report = null;
+		String cacheKey = resultCacheEnabled ? resultCache.key(message, compiled.getKey(), contextType) : null;
+		String cached = cacheKey != null && !bypassCache ? resultCache.get(cacheKey) : null;
+		if (cached != null) {
+			report = EnhancedReport.from("json", cached);
+		} else {
+			long start = System.nanoTime();
+			// ValidationProxy only accepts the ER7 text, so it parses the message again
+			ValidationProxy vp = new ValidationProxy(getValidationServiceName(), getProviderName());
+			report = vp.validate(message, compiled.getProfileXml(), compiled.getConformanceContext(),
+					compiled.getValueSetLibrary(), compiled.getConformanceProfileId(), Context.valueOf(contextType));
+			recordStage(ValidationMetrics.VALIDATION, testContext, start);
+			if (report != null && cacheKey != null) {
+				resultCache.put(cacheKey, report.to("json").toString());
+			}
+		}
+		if (report != null) {
+			if (nav != null && !nav.isEmpty()) {
+				report.setTestCase(nav.get("testPlan"), nav.get("testGroup"), nav.get("testCase"), nav.get("testStep"));
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Validates all the messages of the command against the test context. The validation
+	 * artifacts are built once and the messages are spread over the validation executor, with at
+	 * most {@code parallelism} messages in flight. A message that is not validated within the
+	 * timeout is reported as such and does not fail the batch.
+	 *
+	 * @param testContext
+	 * @param command
+	 * @return the results in input order and the summary of the batch
+	 * @throws MessageValidationException
+	 */
+	public BatchValidationResult validateBatch(TestContext testContext, BatchValidationCommand command)
+			throws MessageValidationException {
+		List<String> messages = command.getMessages() != null ? command.getMessages() : new ArrayList<String>();
+		List<Er7BatchReader.BatchMessage> batch = new ArrayList<Er7BatchReader.BatchMessage>(messages.size());
+		for (int i = 0; i < messages.size(); i++) {
+			batch.add(new Er7BatchReader.BatchMessage(i, -1, messages.get(i), null, null));
+		}
+		final BatchValidationItem[] items = new BatchValidationItem[messages.size()];
+		BatchValidationSummary summary = validateStream(testContext, batch.iterator(), command,
+				new BatchValidationListener() {
+					@Override
+					public void onResult(BatchValidationItem item) {
+						items[item.getIndex()] = item;
+					}
+				});
+		BatchValidationResult result = new BatchValidationResult();
+		result.getItems().addAll(Arrays.asList(items));
+		result.setSummary(summary);
+		return result;
+	}
+
+	/**
+	 * Validates a batch file (FHS/BHS/MSH...BTS/FTS) read incrementally from the reader
+	 *
+	 * @see #validateStream(TestContext, Iterator, BatchValidationCommand,
+	 *      BatchValidationListener)
+	 */
+	public BatchValidationSummary validateStream(TestContext testContext, Reader batchFile,
+			BatchValidationCommand command, BatchValidationListener listener) throws MessageValidationException {
+		Er7BatchReader reader = new Er7BatchReader(batchFile);
+		try {
+			return validateStream(testContext, reader, command, listener);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Validates the messages as they are read from the iterator. At most {@code parallelism}
+	 * messages are read ahead of the ones the workers are done with, so the memory used does not
+	 * depend on the number of messages. The timeout of a message starts when a worker picks it.
+	 * Results are handed to the listener, one at a time, as they complete; reading stops if the
+	 * listener fails.
+	 *
+	 * @param testContext
+	 * @param messages
+	 * @param command
+	 *            : validation options, its messages are ignored
+	 * @param listener
+	 * @return the summary of the batch
+	 * @throws MessageValidationException
+	 */
+	public BatchValidationSummary validateStream(TestContext testContext, Iterator<Er7BatchReader.BatchMessage> messages,
+			final BatchValidationCommand command, final BatchValidationListener listener)
+			throws MessageValidationException {
+		if (!(testContext instanceof HL7V2TestContext)) {
+			throw new MessageValidationException();
+		}
+		final HL7V2TestContext v2TestContext = (HL7V2TestContext) testContext;
+		final CompiledValidationContext compiled;
+		try {
+			compiled = getCompiledValidationContext(v2TestContext);
+		} catch (RuntimeException e) {
+			throw new MessageValidationException(e.getLocalizedMessage());
+		} catch (Exception e) {
+			throw new MessageValidationException(e.getLocalizedMessage());
+		}
+		final int parallelism = Math.max(1, Math.min(batchMaxParallelism,
+				command.getParallelism() != null ? command.getParallelism() : batchMaxParallelism));
+		final long timeout = command.getTimeoutMillis() != null && command.getTimeoutMillis() > 0
+				? command.getTimeoutMillis() : batchTimeoutMillis;
+
+		long start = System.currentTimeMillis();
+		final BatchValidationSummary summary = new BatchValidationSummary();
+		final Semaphore inFlight = new Semaphore(parallelism);
+		final AtomicReference<Exception> listenerFailure = new AtomicReference<Exception>();
+		final ValidationExecutor executor = getValidationExecutor();
+		try {
+			while (listenerFailure.get() == null && messages.hasNext()) {
+				final Er7BatchReader.BatchMessage message = messages.next();
+				inFlight.acquire();
+				// the permit comes back once the result is reported and the worker is done with the
+				// message, so a timed out validation still counts against the parallelism
+				final AtomicInteger pending = new AtomicInteger(2);
+				final Runnable release = new Runnable() {
+					@Override
+					public void run() {
+						if (pending.decrementAndGet() == 0) {
+							inFlight.release();
+						}
+					}
+				};
+				CompletableFuture<BatchValidationItem> result = executor.enqueue(new Callable<BatchValidationItem>() {
+					@Override
+					public BatchValidationItem call() throws Exception {
+						return validateBatchItem(v2TestContext, compiled, command, message.getIndex(),
+								message.getContent());
+					}
+				}, timeout, release);
+				result.whenComplete(new BiConsumer<BatchValidationItem, Throwable>() {
+					@Override
+					public void accept(BatchValidationItem item, Throwable failure) {
+						if (item == null) {
+							item = failure instanceof ValidationTimeoutException
+									? new BatchValidationItem(message.getIndex(), BatchValidationItem.Status.TIMEOUT,
+											null, failure.getLocalizedMessage(), timeout)
+									: new BatchValidationItem(message.getIndex(), BatchValidationItem.Status.FAILED,
+											null, failure != null ? failure.getLocalizedMessage() : null, 0);
+						}
+						item.setLine(message.getLine() > 0 ? message.getLine() : null);
+						try {
+							synchronized (summary) {
+								summary.add(item);
+								listener.onResult(item);
+							}
+						} catch (Exception e) {
+							listenerFailure.compareAndSet(null, e);
+						} finally {
+							release.run();
+						}
+					}
+				});
+			}
+			inFlight.acquire(parallelism);
+			inFlight.release(parallelism);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageValidationException("Batch validation interrupted");
+		} catch (UncheckedIOException e) {
+			throw new MessageValidationException("Failed to read the messages: " + e.getCause().getMessage());
+		}
+		if (listenerFailure.get() != null) {
+			throw new MessageValidationException(
+					"Batch validation aborted: " + listenerFailure.get().getLocalizedMessage());
+		}
+		summary.setParallelism(parallelism);
+		summary.setElapsedMillis(System.currentTimeMillis() - start);
+		return summary;
+	}
+
+	private BatchValidationItem validateBatchItem(HL7V2TestContext testContext, CompiledValidationContext compiled,
+			BatchValidationCommand command, int index, String message) {
+		long start = System.currentTimeMillis();
+		try {
+			if (message == null) {
+				throw new MessageException("No message provided");
+			}
+			EnhancedReport report = generateReport(testContext, compiled, message, command.getContextType(),
+					command.getNav(), command.isBypassCache());
+			String json = report != null ? report.to("json").toString() : null;
+			saveValidationLog(command.getUserId(), testContext, report);
+			if (command.isErrorsOnly()) {
+				json = ValidationReportFilter.errorsOnly(json,
+						command.getMaxErrors() != null ? command.getMaxErrors() : 0);
+			}
+			return new BatchValidationItem(index, BatchValidationItem.Status.VALIDATED, json, null,
+					System.currentTimeMillis() - start);
+		} catch (Exception e) {
+			return new BatchValidationItem(index, BatchValidationItem.Status.FAILED, null, e.getLocalizedMessage(),
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * Saves the log of a validation, off the validation thread unless asynchronous logging is
+	 * disabled or the test context is not persisted
+	 *
+	 * @param userId
+	 * @param testContext
+	 * @param report
+	 */
+	protected void saveValidationLog(Long userId, TestContext testContext, EnhancedReport report) {
+		long start = System.nanoTime();
+		if (isAsyncValidationLogAvailable() && report != null && testContext != null && testContext.getId() != null) {
+			getValidationLogWriter().submit(userId, testContext.getId(), report);
+		} else {
+			validationLogService.generateAndSave(userId, testContext, report);
+		}
+		recordStage(ValidationMetrics.VALIDATION_LOG, testContext, start);
+	}
+
+	/**
+	 * Records the time elapsed since start for the stage, tagged with the test context and its
+	 * conformance profile
+	 *
+	 * @param stage
+	 * @param testContext
+	 * @param start
+	 *            : System.nanoTime() at the beginning of the stage
+	 */
+	protected void recordStage(String stage, TestContext testContext, long start) {
+		if (validationMetrics != null) {
+			HL7V2TestContext v2TestContext = testContext instanceof HL7V2TestContext ? (HL7V2TestContext) testContext
+					: null;
+			String profileId = v2TestContext != null && v2TestContext.getConformanceProfile() != null
+					? v2TestContext.getConformanceProfile().getSourceId() : null;
+			validationMetrics.record(stage, testContext != null ? testContext.getId() : null, profileId,
+					System.nanoTime() - start);
+		}
+	}
+
+	private boolean isAsyncValidationLogAvailable() {
+		return asyncValidationLog && testContextRepository != null;
+	}
+
+	protected synchronized AsyncValidationLogWriter getValidationLogWriter() {
+		if (validationLogWriter == null) {
+			validationLogWriter = new AsyncValidationLogWriter(validationLogService, testContextRepository,
+					transactionManager, validationLogQueueCapacity, validationLogBatchSize, validationLogOverflowPolicy,
+					validationLogSampleRate);
+		}
+		return validationLogWriter;
+	}
+
+	protected synchronized ValidationExecutor getValidationExecutor() {
+		if (validationExecutor == null) {
+			validationExecutor = new ValidationExecutor(executorConcurrency, executorQueueCapacity);
+		}
+		return validationExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (validationExecutor != null) {
+			validationExecutor.shutdown();
+			validationExecutor = null;
+		}
+		if (validationLogWriter != null) {
+			if (!validationLogWriter.shutdown(30000)) {
+				logger.warn("Validation logs still queued at shutdown: "
+						+ validationLogWriter.getStatistics().getQueueDepth());
+			}
+			validationLogWriter = null;
+		}
+	}
+
+	/**
+	 * Returns the compiled conformance context and value set library of the test context,
+	 * building them only when no cached version matches the current resources
+	 *
+	 * @param testContext
+	 * @return
+	 * @throws Exception
+	 */
+	public CompiledValidationContext getCompiledValidationContext(final HL7V2TestContext testContext)
+			throws Exception {
+		return validationContextCache.get(ValidationContextKey.of(testContext),
+				new BoundedCache.Loader<ValidationContextKey, CompiledValidationContext>() {
+					@Override
+					public CompiledValidationContext load(ValidationContextKey key) throws Exception {
+						return compile(key, testContext);
+					}
+				});
+	}
+
+	protected CompiledValidationContext compile(ValidationContextKey key, HL7V2TestContext v2TestContext)
+			throws Exception {
+		String conformanceProfielId = v2TestContext.getConformanceProfile().getSourceId();
+		String valueSets = v2TestContext.getVocabularyLibrary() != null ? v2TestContext.getVocabularyLibrary().getXml()
+				: null;
+		String c1 = v2TestContext.getConstraints() != null ? v2TestContext.getConstraints().getXml() : null;
+		String c2 = v2TestContext.getAddditionalConstraints() != null
+				? v2TestContext.getAddditionalConstraints().getXml() : null;
+		InputStream c1Stream = c1 != null ? IOUtils.toInputStream(c1) : null;
+		InputStream c2Stream = c2 != null ? IOUtils.toInputStream(c2) : null;
+		List<InputStream> cStreams = new ArrayList<InputStream>();
+		if (c1Stream != null)
+			cStreams.add(c1Stream);
+		if (c2Stream != null)
+			cStreams.add(c2Stream);
+		long start = System.nanoTime();
+		ConformanceContext c = getConformanceContext(cStreams);
+		recordStage(ValidationMetrics.CONFORMANCE_CONTEXT, v2TestContext, start);
+		start = System.nanoTime();
+		ValueSetLibrary vsLib = null;
+		if (valueSets != null) {
+			vsLib = getValueSetLibrary(IOUtils.toInputStream(valueSets));
+		}
+		recordStage(ValidationMetrics.VALUE_SET_LIBRARY, v2TestContext, start);
+		String profileXml = v2TestContext.getConformanceProfile().getXml();
+		if (profileXml != null && !hasMessage(profileXml, conformanceProfielId)) {
+			throw new MessageValidationException(
+					"Conformance profile " + conformanceProfielId + " not found in the profile");
+		}
+		return new CompiledValidationContext(key, conformanceProfielId, profileXml, c, vsLib);
+	}
+
+	/**
+	 * Looks for the Message element with the given id, reading the profile only up to the end of
+	 * its Messages element
+	 */
+	protected boolean hasMessage(String profileXml, String messageId) throws XMLStreamException {
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new StringReader(profileXml));
+		try {
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT && "Message".equals(reader.getLocalName())
+						&& messageId.equals(reader.getAttributeValue(null, "ID"))) {
+					return true;
+				}
+				if (event == XMLStreamConstants.END_ELEMENT && "Messages".equals(reader.getLocalName())) {
+					return false;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return false;
+	}
+
 	protected ConformanceContext getConformanceContext(List<InputStream> confContexts) {
 		ConformanceContext c = DefaultConformanceContext.apply(confContexts).get();
 		return c;
@@ -156,4 +693,169 @@ public abstract class HL7V2MessageValidator implements MessageValidator {
 		this.validationLogService = validationLogService;
 	}
 
+	@Value("${hl7v2.validation.contextCache.maxSize:256}")
+	public void setValidationContextCacheSize(int maxSize) {
+		validationContextCache.setMaxSize(maxSize);
+	}
+
+	public int getBatchMaxParallelism() {
+		return batchMaxParallelism;
+	}
+
+	@Value("${hl7v2.validation.batch.maxParallelism:0}")
+	public void setBatchMaxParallelism(int batchMaxParallelism) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		this.batchMaxParallelism = batchMaxParallelism > 0 ? Math.min(batchMaxParallelism, cores) : cores;
+	}
+
+	public long getBatchTimeoutMillis() {
+		return batchTimeoutMillis;
+	}
+
+	@Value("${hl7v2.validation.batch.timeoutMillis:30000}")
+	public void setBatchTimeoutMillis(long batchTimeoutMillis) {
+		this.batchTimeoutMillis = batchTimeoutMillis;
+	}
+
+	public boolean isAsyncValidationLog() {
+		return asyncValidationLog;
+	}
+
+	@Value("${hl7v2.validation.log.async:true}")
+	public void setAsyncValidationLog(boolean asyncValidationLog) {
+		this.asyncValidationLog = asyncValidationLog;
+	}
+
+	@Value("${hl7v2.validation.log.queueCapacity:10000}")
+	public void setValidationLogQueueCapacity(int validationLogQueueCapacity) {
+		this.validationLogQueueCapacity = validationLogQueueCapacity;
+	}
+
+	@Value("${hl7v2.validation.log.batchSize:50}")
+	public void setValidationLogBatchSize(int validationLogBatchSize) {
+		this.validationLogBatchSize = validationLogBatchSize;
+	}
+
+	@Value("${hl7v2.validation.log.overflowPolicy:BLOCK}")
+	public void setValidationLogOverflowPolicy(AsyncValidationLogWriter.OverflowPolicy validationLogOverflowPolicy) {
+		this.validationLogOverflowPolicy = validationLogOverflowPolicy;
+	}
+
+	@Value("${hl7v2.validation.log.sampleRate:10}")
+	public void setValidationLogSampleRate(int validationLogSampleRate) {
+		this.validationLogSampleRate = validationLogSampleRate;
+	}
+
+	public AsyncValidationLogWriter.Statistics getValidationLogStatistics() {
+		return isAsyncValidationLogAvailable() ? getValidationLogWriter().getStatistics() : null;
+	}
+
+	public boolean isEagerHtmlReport() {
+		return eagerHtmlReport;
+	}
+
+	/**
+	 * When true, validate renders the HTML report and keeps nothing. When false, the HTML report is
+	 * not rendered by validate: the report is kept in the report store and fetched by report id
+	 *
+	 * @param eagerHtmlReport
+	 */
+	@Value("${hl7v2.validation.report.eagerHtml:true}")
+	public void setEagerHtmlReport(boolean eagerHtmlReport) {
+		this.eagerHtmlReport = eagerHtmlReport;
+	}
+
+	@Value("${hl7v2.validation.report.maxSize:1000}")
+	public void setReportStoreSize(int maxSize) {
+		reportStore.setMaxSize(maxSize);
+	}
+
+	@Value("${hl7v2.validation.report.ttlMillis:1800000}")
+	public void setReportStoreTtlMillis(long ttlMillis) {
+		reportStore.setTtlMillis(ttlMillis);
+	}
+
+	public ValidationReportStore getReportStore() {
+		return reportStore;
+	}
+
+	public ValidationMetrics getValidationMetrics() {
+		return validationMetrics;
+	}
+
+	public void setValidationMetrics(ValidationMetrics validationMetrics) {
+		this.validationMetrics = validationMetrics;
+	}
+
+	public boolean isResultCacheEnabled() {
+		return resultCacheEnabled;
+	}
+
+	@Value("${hl7v2.validation.resultCache.enabled:false}")
+	public void setResultCacheEnabled(boolean resultCacheEnabled) {
+		this.resultCacheEnabled = resultCacheEnabled;
+		if (!resultCacheEnabled) {
+			resultCache.invalidateAll();
+		}
+	}
+
+	@Value("${hl7v2.validation.resultCache.maxSize:10000}")
+	public void setResultCacheSize(int maxSize) {
+		resultCache.setMaxSize(maxSize);
+	}
+
+	@Value("${hl7v2.validation.resultCache.ttlMillis:600000}")
+	public void setResultCacheTtlMillis(long ttlMillis) {
+		resultCache.setTtlMillis(ttlMillis);
+	}
+
+	public CacheStatistics getResultCacheStatistics() {
+		return resultCache.getStatistics();
+	}
+
+	public void invalidateResults() {
+		resultCache.invalidateAll();
+	}
+
+	public boolean isExecutorEnabled() {
+		return executorEnabled;
+	}
+
+	@Value("${hl7v2.validation.executor.enabled:true}")
+	public void setExecutorEnabled(boolean executorEnabled) {
+		this.executorEnabled = executorEnabled;
+	}
+
+	@Value("${hl7v2.validation.executor.concurrency:0}")
+	public void setExecutorConcurrency(int executorConcurrency) {
+		this.executorConcurrency = executorConcurrency > 0 ? executorConcurrency
+				: Runtime.getRuntime().availableProcessors();
+	}
+
+	@Value("${hl7v2.validation.executor.queueCapacity:100}")
+	public void setExecutorQueueCapacity(int executorQueueCapacity) {
+		this.executorQueueCapacity = executorQueueCapacity;
+	}
+
+	public long getValidationTimeoutMillis() {
+		return validationTimeoutMillis;
+	}
+
+	@Value("${hl7v2.validation.timeoutMillis:60000}")
+	public void setValidationTimeoutMillis(long validationTimeoutMillis) {
+		this.validationTimeoutMillis = validationTimeoutMillis;
+	}
+
+	public ValidationExecutor.Statistics getValidationExecutorStatistics() {
+		return getValidationExecutor().getStatistics();
+	}
+
+	public CacheStatistics getValidationContextCacheStatistics() {
+		return validationContextCache.getStatistics();
+	}
+
+	public void invalidateValidationContexts() {
+		validationContextCache.invalidateAll();
+	}
+
 }
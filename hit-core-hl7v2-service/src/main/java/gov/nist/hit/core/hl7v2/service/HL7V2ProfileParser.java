@@ -14,13 +14,21 @@ package gov.nist.hit.core.hl7v2.service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -36,14 +44,13 @@ import org.xml.sax.SAXException;
 
 import gov.nist.hit.core.domain.ProfileElement;
 import gov.nist.hit.core.domain.ProfileModel;
-import gov.nist.hit.core.domain.constraints.ByID;
-import gov.nist.hit.core.domain.constraints.ByName;
-import gov.nist.hit.core.domain.constraints.ByNameOrByID;
 import gov.nist.hit.core.domain.constraints.ConformanceStatement;
 import gov.nist.hit.core.domain.constraints.Constraints;
 import gov.nist.hit.core.domain.constraints.Context;
 import gov.nist.hit.core.domain.constraints.Predicate;
 import gov.nist.hit.core.hl7v2.domain.util.Util;
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.NamedThreadFactory;
 import gov.nist.hit.core.service.ProfileParser;
 import gov.nist.hit.core.service.exception.ProfileParserException;
 import gov.nist.hit.core.service.impl.ConstraintsParserImpl;
@@ -76,11 +83,39 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 	public HL7V2ProfileParser() {
 	}
 
-	private Map<String, ProfileElement> segmentsMap;
-	private Map<String, ProfileElement> datatypesMap;
-	private Constraints conformanceStatements = null;
-	private Constraints predicates = null;
-	ConstraintsParserImpl constraintsParser = new ConstraintsParserImpl();
+	/**
+	 * State of a single parse, so that one parser can serve concurrent parses
+	 */
+	private static class ParseContext {
+		private final ProfileModel model = new ProfileModel();
+		private final Map<String, ProfileElement> segmentsMap = new LinkedHashMap<String, ProfileElement>();
+		private final Map<String, ProfileElement> datatypesMap = new LinkedHashMap<String, ProfileElement>();
+		private final ConstraintIndex constraints;
+		private String profileId;
+
+		private ParseContext(ConstraintIndex constraints) {
+			this.constraints = constraints;
+		}
+	}
+
+	/**
+	 * Constraint indexes by hash of the constraints xml, shared by the conformance profiles parsed
+	 * with the same constraints
+	 */
+	private final BoundedCache<String, ConstraintIndex> constraintIndexes = new BoundedCache<String, ConstraintIndex>(
+			"constraintIndexes", 16, 0);
+
+	/**
+	 * When set, the components keep the id of their datatype instead of a copy of its
+	 * sub-components: the datatype definitions of the model are shared by all their uses
+	 */
+	private volatile boolean sharedDatatypes;
+
+	/**
+	 * When set, the field, component and segment reference elements get random ids as they used
+	 * to, instead of ids derived from their place in the profile
+	 */
+	private volatile boolean randomIds;
 
 	@Override
 	/**
@@ -102,6 +137,74 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		}
 	}
 
+	/**
+	 * Parses several conformance profiles of an integration profile. The integration profile is
+	 * deserialized and the constraints are indexed once for all of them.
+	 * 
+	 * @param integrationProfileXml
+	 * @param conformanceProfileIds
+	 * @param parallelism
+	 *            : number of conformance profiles parsed at the same time, 1 or less to parse them
+	 *            in turn
+	 * @param constraints
+	 *            : constraints xml content and additional constraints xml content
+	 * @return the models by conformance profile id, in the order of the ids
+	 * @throws ProfileParserException
+	 */
+	public Map<String, ProfileModel> parseAll(String integrationProfileXml, Collection<String> conformanceProfileIds,
+			int parallelism, final String... constraints) throws ProfileParserException {
+		final Profile p;
+		try {
+			InputStream profileStream = IOUtils.toInputStream(integrationProfileXml);
+			p = XMLDeserializer.deserialize(profileStream).get();
+		} catch (Exception e) {
+			throw new ProfileParserException(e.getMessage());
+		}
+		Set<String> ids = new LinkedHashSet<String>(conformanceProfileIds);
+		Map<String, ProfileModel> models = new LinkedHashMap<String, ProfileModel>();
+		if (parallelism <= 1 || ids.size() <= 1) {
+			for (String id : ids) {
+				models.put(id, parse(conformanceProfile(p, id), constraints));
+			}
+			return models;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, ids.size()),
+				new NamedThreadFactory("hl7v2-profile-parse"));
+		try {
+			Map<String, Future<ProfileModel>> futures = new LinkedHashMap<String, Future<ProfileModel>>();
+			for (final String id : ids) {
+				futures.put(id, executor.submit(new Callable<ProfileModel>() {
+					@Override
+					public ProfileModel call() throws Exception {
+						return parse(conformanceProfile(p, id), constraints);
+					}
+				}));
+			}
+			for (Map.Entry<String, Future<ProfileModel>> future : futures.entrySet()) {
+				models.put(future.getKey(), future.getValue().get());
+			}
+			return models;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProfileParserException("Profile parsing interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ProfileParserException) {
+				throw (ProfileParserException) e.getCause();
+			}
+			throw new ProfileParserException(e.getCause().getMessage());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Message conformanceProfile(Profile p, String conformanceProfileId) throws ProfileParserException {
+		Message m = p.getMessage(conformanceProfileId);
+		if (m == null) {
+			throw new ProfileParserException("No conformance profile found with id " + conformanceProfileId);
+		}
+		return m;
+	}
+
 	/**
 	 * TODO: Include additional Constraints
 	 * 
@@ -120,22 +223,9 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 			}
 			String c1Xml = constraints != null && constraints.length > 0 ? constraints[0] : null;
 			String c2Xml = constraints != null && constraints.length > 1 ? constraints[1] : null;
-			this.segmentsMap = new LinkedHashMap<String, ProfileElement>();
-			this.datatypesMap = new LinkedHashMap<String, ProfileElement>();
-			this.conformanceStatements = constraintsParser.confStatements(c1Xml);
-			this.predicates = constraintsParser.predicates(c1Xml);
-			if (c2Xml != null) {
-				Constraints conformanceStatements2 = constraintsParser.confStatements(c2Xml);
-				if (conformanceStatements2 != null) {
-					this.conformanceStatements = merge(this.conformanceStatements, conformanceStatements2);
-				}
-				Constraints predicates2 = constraintsParser.predicates(c2Xml);
-				if (predicates2 != null) {
-					this.predicates = merge(this.predicates, predicates2);
-				}
-			}
-			process((Message) conformanceProfile);
-			return model;
+			ParseContext context = new ParseContext(constraintIndex(c1Xml, c2Xml));
+			process(context, (Message) conformanceProfile);
+			return context.model;
 		} catch (XPathExpressionException e) {
 			throw new ProfileParserException(e.getLocalizedMessage());
 		} catch (CloneNotSupportedException e) {
@@ -143,6 +233,48 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		}
 	}
 
+	/**
+	 * Returns the index of the merged constraints, built once per distinct pair of constraints
+	 * 
+	 * @param c1Xml
+	 * @param c2Xml
+	 *            : additional constraints, may be null
+	 * @return
+	 * @throws XPathExpressionException
+	 */
+	private ConstraintIndex constraintIndex(final String c1Xml, final String c2Xml)
+			throws XPathExpressionException {
+		String key = (c1Xml != null ? HL7V2Util.sha256(c1Xml) : "") + "|"
+				+ (c2Xml != null ? HL7V2Util.sha256(c2Xml) : "");
+		try {
+			return constraintIndexes.get(key, new BoundedCache.Loader<String, ConstraintIndex>() {
+				@Override
+				public ConstraintIndex load(String key) throws Exception {
+					ConstraintsParserImpl constraintsParser = new ConstraintsParserImpl();
+					Constraints conformanceStatements = constraintsParser.confStatements(c1Xml);
+					Constraints predicates = constraintsParser.predicates(c1Xml);
+					if (c2Xml != null) {
+						Constraints conformanceStatements2 = constraintsParser.confStatements(c2Xml);
+						if (conformanceStatements2 != null) {
+							conformanceStatements = merge(conformanceStatements, conformanceStatements2);
+						}
+						Constraints predicates2 = constraintsParser.predicates(c2Xml);
+						if (predicates2 != null) {
+							predicates = merge(predicates, predicates2);
+						}
+					}
+					return new ConstraintIndex(conformanceStatements, predicates);
+				}
+			});
+		} catch (XPathExpressionException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	private Constraints merge(Constraints c1, Constraints c2) {
 		if (c2 == null)
 			return c1;
@@ -185,27 +317,29 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		return c1;
 	}
 
-	private ProfileElement process(Message m) throws XPathExpressionException, CloneNotSupportedException {
-		model = new ProfileModel();
+	private ProfileElement process(ParseContext context, Message m)
+			throws XPathExpressionException, CloneNotSupportedException {
+		ProfileModel model = context.model;
 		ProfileElement message = new ProfileElement("FULL");
 		message.setType(TYPE_MESSAGE);
 		message.setRelevent(true);
 		message.setId(m.id());
+		context.profileId = m.id();
 		model.setMessage(message);
-		message.setConformanceStatements(this.findConformanceStatements(this.conformanceStatements.getMessages(),
+		message.setConformanceStatements(context.constraints.conformanceStatements(ConstraintIndex.Type.MESSAGE,
 				model.getMessage().getId(), model.getMessage().getName()));
-		message.setPredicates(this.findPredicates(this.predicates.getMessages(), model.getMessage().getId(),
+		message.setPredicates(context.constraints.predicates(ConstraintIndex.Type.MESSAGE, model.getMessage().getId(),
 				model.getMessage().getName()));
 
 		scala.collection.immutable.List<SegRefOrGroup> children = m.structure();
 		if (children != null && !children.isEmpty()) {
 			Iterator<SegRefOrGroup> it = children.iterator();
 			while (it.hasNext()) {
-				process(it.next(), message);
+				process(context, it.next(), message);
 			}
 		}
-		model.setDatatypes(this.datatypesMap);
-		model.setSegments(this.segmentsMap);
+		model.setDatatypes(context.datatypesMap);
+		model.setSegments(context.segmentsMap);
 		return message;
 	}
 
@@ -218,20 +352,20 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 	 * @throws XPathExpressionException
 	 * @throws CloneNotSupportedException
 	 */
-	private ProfileElement process(SegRefOrGroup ref, ProfileElement parentElement)
+	private ProfileElement process(ParseContext context, SegRefOrGroup ref, ProfileElement parentElement)
 			throws XPathExpressionException, CloneNotSupportedException {
 		if (ref == null)
 			return parentElement;
 		if (ref instanceof SegmentRef) {
-			return process((SegmentRef) ref, ((SegmentRef) ref).req(), parentElement);
+			return process(context, (SegmentRef) ref, ((SegmentRef) ref).req(), parentElement);
 		} else if (ref instanceof Group) {
-			return process((Group) ref, ((Group) ref).req(), parentElement);
+			return process(context, (Group) ref, ((Group) ref).req(), parentElement);
 		} else {
 			throw new IllegalArgumentException("Unknown type of SegRefOrGroup");
 		}
 	}
 
-	private ProfileElement process(SegmentRef ref, Req req, ProfileElement parentElement)
+	private ProfileElement process(ParseContext context, SegmentRef ref, Req req, ProfileElement parentElement)
 			throws XPathExpressionException, CloneNotSupportedException {
 		ProfileElement element = process(req, new ProfileElement(), parentElement);
 		Segment s = ref.ref();
@@ -241,13 +375,13 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		// element.setIcon(ICON_SEGMENT);
 		element.setParent(parentElement);
 		element.setPosition(req.position() + "");
-		element.setId(UUID.randomUUID().toString());
+		element.setId(elementId(context, parentElement, TYPE_SEGMENT_REF, req.position()));
 		ProfileElement segmentElement = null;
-		if (segmentsMap.containsKey(s.id())) {
-			segmentElement = segmentsMap.get(s.id());
+		if (context.segmentsMap.containsKey(s.id())) {
+			segmentElement = context.segmentsMap.get(s.id());
 		} else {
-			segmentElement = process(ref.ref(), ref.req());
-			segmentsMap.put(segmentElement.getId(), segmentElement);
+			segmentElement = process(context, ref.ref(), ref.req());
+			context.segmentsMap.put(segmentElement.getId(), segmentElement);
 		}
 		segmentElement.setHide(req.hide());
 		segmentElement.setRelevent(segmentElement.isRelevent() || element.isRelevent());
@@ -306,29 +440,31 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 	 * @throws XPathExpressionException
 	 * @throws CloneNotSupportedException
 	 */
-	private ProfileElement process(Segment s, Req req) throws XPathExpressionException, CloneNotSupportedException {
+	private ProfileElement process(ParseContext context, Segment s, Req req)
+			throws XPathExpressionException, CloneNotSupportedException {
 		ProfileElement element = new ProfileElement();
 		element.setName(s.name());
 		element.setType(TYPE_SEGMENT);
 		element.setDescription(s.desc());
 		// element.setIcon(ICON_SEGMENT);
 		element.setId(s.id());
-		element.setDynamicMaps(dynaMap(s));
-		element.setPredicates(this.findPredicates(this.predicates.getSegments(), s.id(), s.name()));
+		element.setDynamicMaps(dynaMap(context, s));
+		element.setPredicates(context.constraints.predicates(ConstraintIndex.Type.SEGMENT, s.id(), s.name()));
 		element.setConformanceStatements(
-				this.findConformanceStatements(this.conformanceStatements.getSegments(), s.id(), s.name()));
+				context.constraints.conformanceStatements(ConstraintIndex.Type.SEGMENT, s.id(), s.name()));
 
 		scala.collection.immutable.List<Field> children = s.fields();
 		if (children != null && !children.isEmpty()) {
 			Iterator<Field> it = children.iterator();
 			while (it.hasNext()) {
-				process(it.next(), element);
+				process(context, it.next(), element);
 			}
 		}
 		return element;
 	}
 
-	private Map<Integer, Set<String>> dynaMap(Segment s) throws XPathExpressionException, CloneNotSupportedException {
+	private Map<Integer, Set<String>> dynaMap(ParseContext context, Segment s)
+			throws XPathExpressionException, CloneNotSupportedException {
 		List<DynMapping> dynamicMappings = s.mappings();
 		if (!dynamicMappings.isEmpty()) {
 			Map<Integer, Set<String>> maps = new HashMap<Integer, Set<String>>();
@@ -340,7 +476,7 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 				while (mapIt.hasNext()) {
 					Datatype da = mapIt.next();
 					ids.add(da.id());
-					process(da);
+					process(context, da);
 				}
 				maps.put(d.position(), ids);
 			}
@@ -360,7 +496,7 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 	 * @throws XPathExpressionException
 	 * @throws CloneNotSupportedException
 	 */
-	private ProfileElement process(Group g, Req req, ProfileElement parentElement)
+	private ProfileElement process(ParseContext context, Group g, Req req, ProfileElement parentElement)
 			throws XPathExpressionException, CloneNotSupportedException {
 		ProfileElement element = process(req, new ProfileElement(), parentElement);
 		element.setType(TYPE_GROUP);
@@ -370,9 +506,9 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		element.setParent(parentElement);
 		element.setPosition(req.position() + "");
 		element.setId(g.id());
-		element.setPredicates(this.findPredicates(this.predicates.getGroups(), g.id(), g.name()));
+		element.setPredicates(context.constraints.predicates(ConstraintIndex.Type.GROUP, g.id(), g.name()));
 		element.setConformanceStatements(
-				this.findConformanceStatements(this.conformanceStatements.getGroups(), g.id(), g.name()));
+				context.constraints.conformanceStatements(ConstraintIndex.Type.GROUP, g.id(), g.name()));
 
 		// String targetPath = getTargetPath(element);
 		// if (!targetPath.equals("")) {
@@ -395,7 +531,7 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		if (children != null) {
 			Iterator<SegRefOrGroup> it = children.iterator();
 			while (it.hasNext()) {
-				process(it.next(), element);
+				process(context, it.next(), element);
 			}
 		}
 		return element;
@@ -445,13 +581,14 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 	 * @throws XPathExpressionException
 	 * @throws CloneNotSupportedException
 	 */
-	private void process(Field f, ProfileElement parent) throws XPathExpressionException, CloneNotSupportedException {
+	private void process(ParseContext context, Field f, ProfileElement parent)
+			throws XPathExpressionException, CloneNotSupportedException {
 		if (f == null)
 			return;
 		ProfileElement element = process(f.req(), new ProfileElement(), parent);
 		element.setName(f.name());
 		element.setType(TYPE_FIELD);
-		element.setId(UUID.randomUUID().toString());
+		element.setId(elementId(context, parent, TYPE_FIELD, f.req().position()));
 		element.setParent(parent);
 		String table = table(f.req());
 		if (table != null) {
@@ -460,7 +597,7 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		element.setPosition(f.req().position() + "");
 		element.setPath(parent.getName() + "-" + f.req().position());
 		parent.getChildren().add(element);
-		ProfileElement datatypeElement = process(f.datatype());
+		ProfileElement datatypeElement = process(context, f.datatype());
 		element.setDatatype(datatypeElement.getId()); // use id for flavors
 	}
 
@@ -476,44 +613,45 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		return null;
 	}
 
-	private ProfileElement process(Datatype d) throws XPathExpressionException, CloneNotSupportedException {
-		if (!datatypesMap.containsKey(d.id())) {
+	private ProfileElement process(ParseContext context, Datatype d)
+			throws XPathExpressionException, CloneNotSupportedException {
+		if (!context.datatypesMap.containsKey(d.id())) {
 			ProfileElement element = new ProfileElement();
 			element.setId(d.id());
 			element.setName(d.name());
 			element.setDescription(d.desc());
 			element.setType(TYPE_DATATYPE);
 			element.setRelevent(true);
-			element.setPredicates(this.findPredicates(this.predicates.getDatatypes(), d.id(), d.name()));
+			element.setPredicates(context.constraints.predicates(ConstraintIndex.Type.DATATYPE, d.id(), d.name()));
 			element.setConformanceStatements(
-					this.findConformanceStatements(this.conformanceStatements.getDatatypes(), d.id(), d.name()));
-			datatypesMap.put(d.id(), element);
+					context.constraints.conformanceStatements(ConstraintIndex.Type.DATATYPE, d.id(), d.name()));
+			context.datatypesMap.put(d.id(), element);
 			if (d instanceof Composite) {
 				Composite c = (Composite) d;
 				scala.collection.immutable.List<Component> children = c.components();
 				if (children != null) {
 					Iterator<Component> it = children.iterator();
 					while (it.hasNext()) {
-						process(it.next(), element);
+						process(context, it.next(), element);
 					}
 				}
 			}
 
 			return element;
 		} else {
-			return datatypesMap.get(d.id());
+			return context.datatypesMap.get(d.id());
 		}
 
 	}
 
-	private ProfileElement process(Component c, ProfileElement parent)
+	private ProfileElement process(ParseContext context, Component c, ProfileElement parent)
 			throws XPathExpressionException, CloneNotSupportedException {
 		if (c == null)
 			return parent;
 		ProfileElement element = new ProfileElement();
 		process(c.req(), element, parent);
 		element.setName(c.name());
-		element.setId(UUID.randomUUID().toString());
+		element.setId(elementId(context, parent, TYPE_COMPONENT, c.req().position()));
 		element.setType(TYPE_COMPONENT);
 		String table = table(c.req());
 		if (table != null)
@@ -523,11 +661,69 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		element.setParent(parent);
 		element.setPath(parent.getPath() + "." + c.req().position());
 		parent.getChildren().add(element);
-		ProfileElement datatypeElement = process(c.datatype());
-		element.setChildren(ProfileElement.clone(datatypeElement.getChildren()));
+		ProfileElement datatypeElement = process(context, c.datatype());
+		if (!sharedDatatypes) {
+			element.setChildren(ProfileElement.clone(datatypeElement.getChildren()));
+		}
 		return element;
 	}
 
+	/**
+	 * 
+	 * @param maxSize
+	 *            : number of constraint indexes kept, 0 to build one per parse
+	 */
+	public void setConstraintIndexCacheSize(int maxSize) {
+		constraintIndexes.setMaxSize(maxSize);
+	}
+
+	/**
+	 * Returns the id of a field, component or segment reference element: a name based UUID of the
+	 * conformance profile id, the id of the parent element, the type and the position, so that
+	 * parsing an unchanged profile gives the same ids
+	 * 
+	 * @param context
+	 * @param parent
+	 * @param type
+	 * @param position
+	 * @return
+	 */
+	private String elementId(ParseContext context, ProfileElement parent, String type, int position) {
+		if (randomIds) {
+			return UUID.randomUUID().toString();
+		}
+		String path = context.profileId + "|" + parent.getId() + "|" + type + "|" + position;
+		return UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	public boolean isRandomIds() {
+		return randomIds;
+	}
+
+	/**
+	 * 
+	 * @param randomIds
+	 *            : true to give random ids to the elements, as in the previous versions
+	 */
+	public void setRandomIds(boolean randomIds) {
+		this.randomIds = randomIds;
+	}
+
+	public boolean isSharedDatatypes() {
+		return sharedDatatypes;
+	}
+
+	/**
+	 * 
+	 * @param sharedDatatypes
+	 *            : true to reference the sub-components of a component through its datatype
+	 *            instead of copying them; the usage, cardinality and table of each use stay on
+	 *            the component
+	 */
+	public void setSharedDatatypes(boolean sharedDatatypes) {
+		this.sharedDatatypes = sharedDatatypes;
+	}
+
 	private Document toDoc(String xmlSource) {
 		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		factory.setNamespaceAware(true);
@@ -553,7 +749,8 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		return elmIntegrationProfile.getAttribute("ID");
 	}
 
-	private ProfileElement findElement(java.util.List<Integer> positions, ProfileElement element) {
+	private ProfileElement findElement(ParseContext context, java.util.List<Integer> positions,
+			ProfileElement element) {
 		if (!positions.isEmpty()) {
 			int curPos = positions.get(0);
 			ProfileElement child1 = null;
@@ -562,12 +759,12 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 					|| element.getType().equals(TYPE_COMPONENT) || element.getType().equals(TYPE_DATATYPE)) {
 				child1 = element.getChildren().get(curPos - 1);
 			} else if (element.getType().equals(TYPE_SEGMENT_REF)) {
-				ProfileElement segmentElement = segmentsMap.get(element.getRef());
+				ProfileElement segmentElement = context.segmentsMap.get(element.getRef());
 				child1 = segmentElement.getChildren().get(curPos - 1);
 			}
 			positions.remove(0);
 			if (!positions.isEmpty()) {
-				return findElement(positions, child1);
+				return findElement(context, positions, child1);
 			}
 			return child1;
 		}
@@ -584,10 +781,10 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		return positions;
 	}
 
-	private ProfileElement findElementByTarget(String target, ProfileElement element) {
+	private ProfileElement findElementByTarget(ParseContext context, String target, ProfileElement element) {
 		if (target != null && !"".equals(target)) {
 			java.util.List<Integer> positions = positions(target);
-			ProfileElement found = findElement(positions, element);
+			ProfileElement found = findElement(context, positions, element);
 			return found;
 		}
 		return null;
@@ -627,50 +824,4 @@ public abstract class HL7V2ProfileParser extends ProfileParser {
 		return null;
 	}
 
-	private ArrayList<ConformanceStatement> findConformanceStatements(Context context, String id, String name) {
-		Set<ByNameOrByID> byNameOrByIDs = context.getByNameOrByIDs();
-		ArrayList<ConformanceStatement> result = new ArrayList<ConformanceStatement>();
-		for (ByNameOrByID byNameOrByID : byNameOrByIDs) {
-			if (byNameOrByID instanceof ByID) {
-				ByID byID = (ByID) byNameOrByID;
-				if (byID.getByID().equals(id)) {
-					for (ConformanceStatement c : byID.getConformanceStatements()) {
-						result.add(c);
-					}
-				}
-			} else if (byNameOrByID instanceof ByName) {
-				ByName byName = (ByName) byNameOrByID;
-				if (byName.getByName().equals(name)) {
-					for (ConformanceStatement c : byName.getConformanceStatements()) {
-						result.add(c);
-					}
-				}
-			}
-		}
-		return result;
-	}
-
-	private ArrayList<Predicate> findPredicates(Context context, String id, String name) {
-		Set<ByNameOrByID> byNameOrByIDs = context.getByNameOrByIDs();
-		ArrayList<Predicate> result = new ArrayList<Predicate>();
-		for (ByNameOrByID byNameOrByID : byNameOrByIDs) {
-			if (byNameOrByID instanceof ByID) {
-				ByID byID = (ByID) byNameOrByID;
-				if (byID.getByID().equals(id)) {
-					for (Predicate p : byID.getPredicates()) {
-						result.add(p);
-					}
-				}
-			} else if (byNameOrByID instanceof ByName) {
-				ByName byName = (ByName) byNameOrByID;
-				if (byName.getByName().equals(name)) {
-					for (Predicate p : byName.getPredicates()) {
-						result.add(p);
-					}
-				}
-			}
-		}
-		return result;
-	}
-
 }
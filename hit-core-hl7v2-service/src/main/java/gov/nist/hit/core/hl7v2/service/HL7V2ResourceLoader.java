@@ -1,7 +1,28 @@
 package gov.nist.hit.core.hl7v2.service;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
 import gov.nist.hit.core.service.ResourceLoader;
+import gov.nist.hit.core.service.exception.ProfileParserException;
 
 public abstract class HL7V2ResourceLoader extends ResourceLoader {
 
+	/**
+	 * Returns the json of several conformance profiles of an integration profile, parsing the
+	 * integration profile and the constraints once for all of them
+	 * 
+	 * @param integrationProfileXml
+	 * @param conformanceProfileIds
+	 * @param constraintsXml
+	 * @param additionalConstraintsXml
+	 * @return the json by conformance profile id, in the order of the ids
+	 * @throws ProfileParserException
+	 * @throws IOException
+	 */
+	public abstract Map<String, String> jsonConformanceProfiles(String integrationProfileXml,
+			Collection<String> conformanceProfileIds, String constraintsXml, String additionalConstraintsXml)
+			throws ProfileParserException, IOException;
+
 }
@@ -1,9 +1,13 @@
 package gov.nist.hit.core.hl7v2.service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.regex.Pattern;
 
-public class HL7V2Util {
+import gov.nist.hit.core.hl7v2.domain.MessageHeader;
 
+public class HL7V2Util {
 
   public static int getPosition(String path, String type) {
     switch (type) {
@@ -54,5 +58,101 @@ public class HL7V2Util {
     return getPosition(path, getType(path));
   }
 
+  /**
+   * Version stamp of a stored resource: its identity plus the SHA-256 of its content
+   * 
+   * @param id - The identity of the resource (database or source id)
+   * @param content - The content of the resource
+   * @return The fingerprint or null if the resource has no content
+   */
+  public static String fingerprint(Object id, String content) {
+    if (content == null) {
+      return null;
+    }
+    return id + ":" + sha256(content);
+  }
+
+  /**
+   * 
+   * @param content - The content to hash
+   * @return The hex encoded SHA-256 of the UTF-8 bytes of the content
+   */
+  public static String sha256(String content) {
+    try {
+      byte[] hash =
+          MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Reads the routing fields of the first MSH segment of an ER7 message without parsing the rest
+   * of the message
+   * 
+   * @param message - The ER7 message
+   * @return The header or null if the message has no MSH segment
+   */
+  public static MessageHeader readMessageHeader(String message) {
+    if (message == null) {
+      return null;
+    }
+    int start = message.startsWith("MSH") ? 0 : -1;
+    for (int i = message.indexOf("MSH"); start < 0 && i > 0; i = message.indexOf("MSH", i + 1)) {
+      char previous = message.charAt(i - 1);
+      if (previous == '\r' || previous == '\n') {
+        start = i;
+      }
+    }
+    if (start < 0 || message.length() < start + 8) {
+      return null;
+    }
+    char fieldSeparator = message.charAt(start + 3);
+    char componentSeparator = message.charAt(start + 4);
+    char repetitionSeparator = message.charAt(start + 5);
+    MessageHeader header = new MessageHeader();
+    // MSH-1 is the field separator itself, MSH-2 starts right after it
+    int field = 2;
+    int position = start + 4;
+    while (field <= 21 && position <= message.length()) {
+      int end = position;
+      while (end < message.length() && message.charAt(end) != fieldSeparator
+          && message.charAt(end) != '\r' && message.charAt(end) != '\n') {
+        end++;
+      }
+      if (field == 9) {
+        String[] components = split(message.substring(position, end), componentSeparator);
+        header.setMessageType(components.length > 0 ? emptyToNull(components[0]) : null);
+        header.setEvent(components.length > 1 ? emptyToNull(components[1]) : null);
+        header.setStructureId(components.length > 2 ? emptyToNull(components[2]) : null);
+      } else if (field == 21) {
+        for (String repetition : split(message.substring(position, end), repetitionSeparator)) {
+          String identifier = emptyToNull(split(repetition, componentSeparator)[0]);
+          if (identifier != null) {
+            header.getProfileIdentifiers().add(identifier);
+          }
+        }
+      }
+      if (end >= message.length() || message.charAt(end) != fieldSeparator) {
+        break;
+      }
+      position = end + 1;
+      field++;
+    }
+    return header;
+  }
+
+  private static String[] split(String value, char separator) {
+    return value.split(Pattern.quote(String.valueOf(separator)), -1);
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
 
 }
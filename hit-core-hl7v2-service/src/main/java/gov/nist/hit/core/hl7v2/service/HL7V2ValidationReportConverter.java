@@ -28,6 +28,10 @@ public abstract class HL7V2ValidationReportConverter implements ValidationReport
   @Override
   public String toXML(String json) throws Exception {
     EnhancedReport report = EnhancedReport.from("json", json);
+    return toXML(report);
+  }
+
+  public String toXML(EnhancedReport report) throws Exception {
     String xml = new XMLConverter().convert(report);
     return xml;
   }
@@ -0,0 +1,106 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import gov.nist.hit.core.hl7v2.domain.CompactMessageNode;
+import hl7.v2.instance.Location;
+import hl7.v2.instance.Message;
+import hl7.v2.instance.Segment;
+import hl7.v2.profile.Req;
+
+/**
+ * Writes a parsed message straight to a json generator while walking the message instance, in
+ * the shape the compact message model ({@link CompactMessageNode}) is serialized with, null
+ * fields left out, without building any intermediate tree
+ *
+ * @author Harold Affo
+ *
+ */
+public class MessageTreeJsonWriter extends MessageTreeWalker<IOException> {
+
+	private final JsonGenerator generator;
+
+	public MessageTreeJsonWriter(JsonGenerator generator) {
+		this.generator = generator;
+	}
+
+	public void write(Message message, Map<String, String> delimeters) throws IOException {
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("elements");
+		for (Segment segment : segments(message)) {
+			walkSegment(segment, true);
+		}
+		generator.writeEndArray();
+		if (delimeters != null) {
+			generator.writeObjectFieldStart("delimeters");
+			for (Map.Entry<String, String> entry : delimeters.entrySet()) {
+				generator.writeStringField(entry.getKey(), entry.getValue());
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndObject();
+		generator.flush();
+	}
+
+	@Override
+	protected void start(String type, Location loc, Req req, int minOccurs, String maxOccurs, int position,
+			int instance) throws IOException {
+		generator.writeStartObject();
+		string("type", type);
+		string("name", loc.desc());
+		string("path", loc.uidPath());
+		string("usage", req.usage().toString());
+		generator.writeNumberField("minOccurs", minOccurs);
+		string("maxOccurs", maxOccurs);
+		generator.writeNumberField("line", loc.line());
+		generator.writeNumberField("column", loc.column());
+		generator.writeNumberField("position", position);
+		generator.writeNumberField("instance", instance);
+	}
+
+	@Override
+	protected void value(String value) throws IOException {
+		string("value", value);
+	}
+
+	@Override
+	protected void childCount(int count) throws IOException {
+		generator.writeNumberField("childCount", count);
+	}
+
+	@Override
+	protected void startChildren() throws IOException {
+		generator.writeArrayFieldStart("children");
+	}
+
+	@Override
+	protected void endChildren() throws IOException {
+		generator.writeEndArray();
+	}
+
+	@Override
+	protected void end() throws IOException {
+		generator.writeEndObject();
+	}
+
+	private void string(String name, String value) throws IOException {
+		if (value != null) {
+			generator.writeStringField(name, value);
+		}
+	}
+
+}
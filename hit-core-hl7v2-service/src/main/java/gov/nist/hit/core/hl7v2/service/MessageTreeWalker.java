@@ -0,0 +1,164 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.nist.hit.core.hl7v2.domain.util.Util;
+import hl7.v2.instance.ComplexComponent;
+import hl7.v2.instance.ComplexField;
+import hl7.v2.instance.Component;
+import hl7.v2.instance.Field;
+import hl7.v2.instance.Group;
+import hl7.v2.instance.Location;
+import hl7.v2.instance.Message;
+import hl7.v2.instance.NULLComplexField;
+import hl7.v2.instance.SegOrGroup;
+import hl7.v2.instance.Segment;
+import hl7.v2.instance.SimpleComponent;
+import hl7.v2.instance.SimpleField;
+import hl7.v2.instance.UnresolvedField;
+import hl7.v2.profile.Range;
+import hl7.v2.profile.Req;
+import scala.collection.Iterator;
+
+/**
+ * Walks a message instance in the order of the compact message model, reporting each segment,
+ * field, component and sub-component to the callbacks. A shallow walk reports the number of
+ * children of the element instead of walking them.
+ *
+ * @author Harold Affo
+ *
+ * @param <E>
+ *            the exception thrown by the callbacks
+ */
+abstract class MessageTreeWalker<E extends Exception> {
+
+	static final String NODE_SEGMENT = "segment";
+	static final String NODE_FIELD = "field";
+	static final String NODE_COMPONENT = "component";
+	static final String NODE_SUB_COMPONENT = "subcomponent";
+
+	/**
+	 * Returns the segments of the message in order, groups flattened
+	 *
+	 * @param message
+	 * @return
+	 */
+	static List<Segment> segments(Message message) {
+		List<Segment> segments = new ArrayList<Segment>();
+		Iterator<SegOrGroup> it = message.children().iterator();
+		while (it.hasNext()) {
+			collect(it.next(), segments);
+		}
+		return segments;
+	}
+
+	private static void collect(SegOrGroup e, List<Segment> segments) {
+		if (e instanceof Segment) {
+			segments.add((Segment) e);
+		} else if (e instanceof Group) {
+			Iterator<SegOrGroup> it = ((Group) e).children().iterator();
+			while (it.hasNext()) {
+				collect(it.next(), segments);
+			}
+		}
+	}
+
+	void walkSegment(Segment s, boolean deep) throws E {
+		Range card = Util.getOption(s.req().cardinality());
+		start(NODE_SEGMENT, s.location(), s.req(), card.min(), card.max(), s.position(), s.instance());
+		if (deep) {
+			Iterator<Field> it = s.children().iterator();
+			if (it.hasNext()) {
+				startChildren();
+				while (it.hasNext()) {
+					walkField(it.next(), true);
+				}
+				endChildren();
+			}
+		} else {
+			childCount(s.children().size());
+		}
+		end();
+	}
+
+	void walkField(Field f, boolean deep) throws E {
+		Range card = Util.getOption(f.req().cardinality());
+		start(NODE_FIELD, f.location(), f.req(), card.min(), card.max(), f.position(), f.instance());
+		if (f instanceof SimpleField) {
+			value(((SimpleField) f).value().raw());
+		} else if (f instanceof UnresolvedField) {
+			value(((UnresolvedField) f).value().raw());
+		} else if ((f instanceof ComplexField) && !(f instanceof NULLComplexField)) {
+			if (deep) {
+				Iterator<Component> it = ((ComplexField) f).children().iterator();
+				if (it.hasNext()) {
+					startChildren();
+					while (it.hasNext()) {
+						walkComponent(it.next(), true);
+					}
+					endChildren();
+				}
+			} else {
+				childCount(((ComplexField) f).children().size());
+			}
+		}
+		end();
+	}
+
+	void walkComponent(Component c, boolean deep) throws E {
+		start(NODE_COMPONENT, c.location(), c.req(), -1, null, c.position(), c.instance());
+		if (c instanceof SimpleComponent) {
+			value(((SimpleComponent) c).value().raw());
+		} else if (deep) {
+			Iterator<SimpleComponent> it = ((ComplexComponent) c).children().iterator();
+			if (it.hasNext()) {
+				startChildren();
+				while (it.hasNext()) {
+					walkSubComponent(it.next());
+				}
+				endChildren();
+			}
+		} else {
+			childCount(((ComplexComponent) c).children().size());
+		}
+		end();
+	}
+
+	void walkSubComponent(SimpleComponent s) throws E {
+		start(NODE_SUB_COMPONENT, s.location(), s.req(), -1, null, s.position(), s.instance());
+		value(s.value().raw());
+		end();
+	}
+
+	/**
+	 * Starts an element, its value and children following until {@link #end()}
+	 */
+	protected abstract void start(String type, Location loc, Req req, int minOccurs, String maxOccurs,
+			int position, int instance) throws E;
+
+	protected abstract void value(String value) throws E;
+
+	protected abstract void childCount(int count) throws E;
+
+	/**
+	 * Called before the first child of the current element, only when it has children
+	 */
+	protected abstract void startChildren() throws E;
+
+	protected abstract void endChildren() throws E;
+
+	protected abstract void end() throws E;
+
+}
@@ -0,0 +1,176 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hl7.v2.instance.ComplexComponent;
+import hl7.v2.instance.ComplexField;
+import hl7.v2.instance.Component;
+import hl7.v2.instance.Field;
+import hl7.v2.instance.Message;
+import hl7.v2.instance.NULLComplexField;
+import hl7.v2.instance.Segment;
+import hl7.v2.instance.SimpleComponent;
+import scala.collection.Iterator;
+
+/**
+ * A message parsed against a conformance profile and kept on the server so that its tree can be
+ * expanded on demand. The message instance is immutable and safe to share between threads.
+ *
+ * @author Harold Affo
+ *
+ */
+public class ParsedMessage {
+
+	private final String handle;
+	private final String conformanceProfileId;
+	private final String content;
+	private final Message message;
+	private final Map<String, String> delimeters;
+	private final Map<String, Segment> segments;
+	private final Segment[] segmentsByLine;
+	private final int[] segmentLines;
+	private final SegmentIndex segmentIndex;
+
+	/**
+	 *
+	 * @param handle
+	 *            : key of the parse, derived from the message and the conformance profile
+	 * @param conformanceProfileId
+	 * @param content
+	 * @param message
+	 * @param delimeters
+	 */
+	public ParsedMessage(String handle, String conformanceProfileId, String content, Message message,
+			Map<String, String> delimeters) {
+		this.handle = handle;
+		this.conformanceProfileId = conformanceProfileId;
+		this.content = content;
+		this.message = message;
+		this.delimeters = delimeters;
+		List<Segment> list = MessageTreeWalker.segments(message);
+		this.segments = new LinkedHashMap<String, Segment>(list.size() * 2);
+		for (Segment segment : list) {
+			segments.put(segment.location().uidPath(), segment);
+		}
+		this.segmentsByLine = list.toArray(new Segment[list.size()]);
+		Arrays.sort(segmentsByLine, new Comparator<Segment>() {
+			@Override
+			public int compare(Segment s1, Segment s2) {
+				return Integer.compare(s1.location().line(), s2.location().line());
+			}
+		});
+		this.segmentLines = new int[segmentsByLine.length];
+		for (int i = 0; i < segmentsByLine.length; i++) {
+			segmentLines[i] = segmentsByLine[i].location().line();
+		}
+		this.segmentIndex = new SegmentIndex(content);
+	}
+
+	/**
+	 *
+	 * @param line
+	 * @return the parsed segment starting on the line or null
+	 */
+	public Segment findSegment(int line) {
+		int index = Arrays.binarySearch(segmentLines, line);
+		return index >= 0 ? segmentsByLine[index] : null;
+	}
+
+	/**
+	 * Returns the segment, field, component or sub-component at the uid path
+	 *
+	 * @param uidPath
+	 * @return the element or null when the message has none at this path
+	 */
+	public Object find(String uidPath) {
+		Segment segment = segments.get(uidPath);
+		if (segment != null) {
+			return segment;
+		}
+		// group paths contain dots too: look for the longest prefix naming a segment
+		for (int i = uidPath.lastIndexOf('.'); i > 0; i = uidPath.lastIndexOf('.', i - 1)) {
+			segment = segments.get(uidPath.substring(0, i));
+			if (segment != null) {
+				return find(segment, uidPath);
+			}
+		}
+		return null;
+	}
+
+	private Object find(Segment segment, String uidPath) {
+		Iterator<Field> fields = segment.children().iterator();
+		while (fields.hasNext()) {
+			Field field = fields.next();
+			String path = field.location().uidPath();
+			if (path.equals(uidPath)) {
+				return field;
+			}
+			if (uidPath.startsWith(path + ".") && field instanceof ComplexField
+					&& !(field instanceof NULLComplexField)) {
+				Iterator<Component> components = ((ComplexField) field).children().iterator();
+				while (components.hasNext()) {
+					Component component = components.next();
+					path = component.location().uidPath();
+					if (path.equals(uidPath)) {
+						return component;
+					}
+					if (uidPath.startsWith(path + ".") && component instanceof ComplexComponent) {
+						Iterator<SimpleComponent> subComponents = ((ComplexComponent) component).children()
+								.iterator();
+						while (subComponents.hasNext()) {
+							SimpleComponent subComponent = subComponents.next();
+							if (subComponent.location().uidPath().equals(uidPath)) {
+								return subComponent;
+							}
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	public String getHandle() {
+		return handle;
+	}
+
+	public String getConformanceProfileId() {
+		return conformanceProfileId;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public Message getMessage() {
+		return message;
+	}
+
+	public Map<String, String> getDelimeters() {
+		return delimeters;
+	}
+
+	public Map<String, Segment> getSegments() {
+		return segments;
+	}
+
+	public SegmentIndex getSegmentIndex() {
+		return segmentIndex;
+	}
+
+}
@@ -0,0 +1,67 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
+
+/**
+ * Keeps the messages parsed for a lazy view by handle so that their trees can be expanded after
+ * the parse returned
+ *
+ * @author Harold Affo
+ *
+ */
+public class ParsedMessageCache {
+
+	private final BoundedCache<String, ParsedMessage> messages;
+
+	public ParsedMessageCache(int maxSize, long ttlMillis) {
+		this.messages = new BoundedCache<String, ParsedMessage>("parsedMessages", maxSize, ttlMillis);
+	}
+
+	/**
+	 * Returns the parsed message of the key or parses it with the loader. Concurrent requests for
+	 * the same key wait for the first parse.
+	 *
+	 * @param key
+	 * @param loader
+	 * @return
+	 * @throws Exception
+	 *             the exception thrown by the loader
+	 */
+	public ParsedMessage get(String key, BoundedCache.Loader<String, ParsedMessage> loader) throws Exception {
+		return messages.get(key, loader);
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return the parsed message or null when unknown or expired
+	 */
+	public ParsedMessage get(String handle) {
+		return messages.getIfPresent(handle);
+	}
+
+	public void setMaxSize(int maxSize) {
+		messages.setMaxSize(maxSize);
+	}
+
+	public void setTtlMillis(long ttlMillis) {
+		messages.setTtlMillis(ttlMillis);
+	}
+
+	public CacheStatistics getStatistics() {
+		return messages.getStatistics();
+	}
+
+}
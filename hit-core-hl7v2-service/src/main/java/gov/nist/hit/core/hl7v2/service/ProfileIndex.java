@@ -0,0 +1,48 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.List;
+
+import gov.nist.hit.core.hl7v2.domain.MessageHeader;
+import gov.nist.hit.core.hl7v2.domain.ProfileCandidate;
+
+/**
+ * Index of the test contexts by the message type, event, structure id and profile identifier
+ * of their conformance profile
+ *
+ * @author Harold Affo
+ *
+ */
+public interface ProfileIndex {
+
+	/**
+	 * Returns the test contexts matching the header, the most specific matches first: MSH-21
+	 * profile identifier, then message type, event and structure id, then message type and event
+	 *
+	 * @param header
+	 * @return
+	 */
+	List<ProfileCandidate> findCandidates(MessageHeader header);
+
+	/**
+	 * Rebuilds the index from the stored test contexts
+	 */
+	void refresh();
+
+	/**
+	 *
+	 * @return the number of indexed test contexts
+	 */
+	int size();
+
+}
@@ -0,0 +1,191 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Offsets of the segments of an ER7 message: segment id, occurrence, character offset and line
+ * of each segment, in document order. Built with a single scan of the message so that a segment
+ * can be found by line, by offset or by id and occurrence without rescanning it.
+ *
+ * @author Harold Affo
+ *
+ */
+public class SegmentIndex {
+
+	private final String content;
+	private String[] ids;
+	private int[] occurrences;
+	private int[] offsets;
+	private int[] ends;
+	private int[] lines;
+	private int size;
+	private final Map<String, int[]> byId = new HashMap<String, int[]>();
+
+	/**
+	 * Lines end with a carriage return, a line feed or both; blank lines are not segments
+	 *
+	 * @param content
+	 *            : the message
+	 */
+	public SegmentIndex(String content) {
+		this.content = content;
+		int capacity = 16;
+		ids = new String[capacity];
+		occurrences = new int[capacity];
+		offsets = new int[capacity];
+		ends = new int[capacity];
+		lines = new int[capacity];
+		Map<String, String> names = new HashMap<String, String>();
+		int n = content.length();
+		int line = 1;
+		int start = 0;
+		while (start < n) {
+			int end = start;
+			while (end < n && content.charAt(end) != '\r' && content.charAt(end) != '\n') {
+				end++;
+			}
+			if (!isBlank(start, end)) {
+				String id = content.substring(start, Math.min(end, start + 3));
+				String shared = names.get(id);
+				if (shared == null) {
+					names.put(id, id);
+					shared = id;
+				}
+				add(shared, start, end, line);
+			}
+			if (end + 1 < n && content.charAt(end) == '\r' && content.charAt(end + 1) == '\n') {
+				end++;
+			}
+			start = end + 1;
+			line++;
+		}
+		for (Map.Entry<String, int[]> entry : byId.entrySet()) {
+			entry.setValue(Arrays.copyOf(entry.getValue(), count(entry.getValue())));
+		}
+	}
+
+	private void add(String id, int start, int end, int line) {
+		if (size == ids.length) {
+			int capacity = size * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			occurrences = Arrays.copyOf(occurrences, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+		}
+		int[] indexes = byId.get(id);
+		int occurrence = 1;
+		if (indexes == null) {
+			indexes = new int[] { size, -1, -1, -1 };
+			byId.put(id, indexes);
+		} else {
+			int count = count(indexes);
+			if (count == indexes.length) {
+				indexes = Arrays.copyOf(indexes, count * 2);
+				Arrays.fill(indexes, count, indexes.length, -1);
+				byId.put(id, indexes);
+			}
+			indexes[count] = size;
+			occurrence = count + 1;
+		}
+		ids[size] = id;
+		occurrences[size] = occurrence;
+		offsets[size] = start;
+		ends[size] = end;
+		lines[size] = line;
+		size++;
+	}
+
+	private static int count(int[] indexes) {
+		int count = 0;
+		while (count < indexes.length && indexes[count] >= 0) {
+			count++;
+		}
+		return count;
+	}
+
+	private boolean isBlank(int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(content.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param line
+	 * @return the index of the segment on the line or -1
+	 */
+	public int findByLine(int line) {
+		int index = Arrays.binarySearch(lines, 0, size, line);
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 *
+	 * @param offset
+	 * @return the index of the segment containing the character offset or -1
+	 */
+	public int findByOffset(int offset) {
+		int index = Arrays.binarySearch(offsets, 0, size, offset);
+		if (index < 0) {
+			index = -index - 2;
+		}
+		return index >= 0 && offset <= ends[index] ? index : -1;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @param occurrence
+	 *            : starting at 1
+	 * @return the index of the segment or -1
+	 */
+	public int find(String id, int occurrence) {
+		int[] indexes = byId.get(id);
+		return indexes != null && occurrence >= 1 && occurrence <= indexes.length ? indexes[occurrence - 1] : -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getId(int index) {
+		return ids[index];
+	}
+
+	public int getOccurrence(int index) {
+		return occurrences[index];
+	}
+
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+
+	public int getLine(int index) {
+		return lines[index];
+	}
+
+	/**
+	 * @return the text of the segment, without its terminator
+	 */
+	public String getRaw(int index) {
+		return content.substring(offsets[index], ends[index]);
+	}
+
+}
@@ -0,0 +1,95 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import gov.nist.hit.core.domain.ConformanceProfile;
+import gov.nist.hit.core.domain.Constraints;
+import gov.nist.hit.core.domain.VocabularyLibrary;
+import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
+
+/**
+ * Identifies the compiled validation artifacts of a test context by the identity and version of
+ * its conformance profile, constraints, additional constraints and value set library.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class ValidationContextKey implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String profile;
+	private final String constraints;
+	private final String additionalConstraints;
+	private final String vocabulary;
+
+	public ValidationContextKey(String profile, String constraints, String additionalConstraints,
+			String vocabulary) {
+		this.profile = profile;
+		this.constraints = constraints;
+		this.additionalConstraints = additionalConstraints;
+		this.vocabulary = vocabulary;
+	}
+
+	public static ValidationContextKey of(HL7V2TestContext testContext) {
+		ConformanceProfile p = testContext.getConformanceProfile();
+		Constraints c1 = testContext.getConstraints();
+		Constraints c2 = testContext.getAddditionalConstraints();
+		VocabularyLibrary vs = testContext.getVocabularyLibrary();
+		return new ValidationContextKey(p != null ? HL7V2Util.fingerprint(p.getSourceId(), p.getXml()) : null,
+				c1 != null ? HL7V2Util.fingerprint(c1.getSourceId(), c1.getXml()) : null,
+				c2 != null ? HL7V2Util.fingerprint(c2.getSourceId(), c2.getXml()) : null,
+				vs != null ? HL7V2Util.fingerprint(vs.getSourceId(), vs.getXml()) : null);
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public String getConstraints() {
+		return constraints;
+	}
+
+	public String getAdditionalConstraints() {
+		return additionalConstraints;
+	}
+
+	public String getVocabulary() {
+		return vocabulary;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(new Object[] { profile, constraints, additionalConstraints, vocabulary });
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ValidationContextKey))
+			return false;
+		ValidationContextKey other = (ValidationContextKey) obj;
+		return Arrays.equals(new Object[] { profile, constraints, additionalConstraints, vocabulary },
+				new Object[] { other.profile, other.constraints, other.additionalConstraints, other.vocabulary });
+	}
+
+	@Override
+	public String toString() {
+		return "[profile=" + profile + ", constraints=" + constraints + ", additionalConstraints="
+				+ additionalConstraints + ", vocabulary=" + vocabulary + "]";
+	}
+
+}
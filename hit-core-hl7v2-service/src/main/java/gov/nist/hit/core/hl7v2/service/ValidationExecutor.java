@@ -0,0 +1,401 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gov.nist.hit.core.hl7v2.service.exception.ValidationRejectedException;
+import gov.nist.hit.core.hl7v2.service.exception.ValidationTimeoutException;
+import gov.nist.hit.core.hl7v2.service.util.NamedThreadFactory;
+import gov.nist.hit.core.service.exception.MessageValidationException;
+
+/**
+ * Runs validations off the caller thread with a cap on the number of concurrent validations, a
+ * bounded wait queue and a wall-clock timeout per validation. Single validations submitted beyond
+ * the cap and the queue are rejected immediately, batch validations wait for room in the queue. A
+ * validation that exceeds its timeout is cancelled, which interrupts its thread.
+ *
+ * Virtual threads are used when the JVM provides them, with a semaphore enforcing the cap;
+ * otherwise a fixed size pool is used.
+ *
+ * @author Harold Affo
+ *
+ */
+public class ValidationExecutor {
+
+	static final Logger logger = LoggerFactory.getLogger(ValidationExecutor.class);
+
+	private final int concurrency;
+	private final int queueCapacity;
+	private final ExecutorService executor;
+	private final Semaphore admission;
+	private final Semaphore running;
+	private final boolean virtualThreads;
+	private final ScheduledExecutorService watchdog;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong timedOut = new AtomicLong();
+
+	public ValidationExecutor(int concurrency, int queueCapacity) {
+		this.concurrency = Math.max(1, concurrency);
+		this.queueCapacity = Math.max(0, queueCapacity);
+		// queued and running validations, the pool queue itself is never fuller than this
+		this.admission = new Semaphore(this.concurrency + this.queueCapacity);
+		ExecutorService virtual = newVirtualThreadExecutor();
+		if (virtual != null) {
+			this.executor = virtual;
+			this.virtualThreads = true;
+			this.running = new Semaphore(this.concurrency, true);
+		} else {
+			this.executor = new ThreadPoolExecutor(this.concurrency, this.concurrency, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("hl7v2-validation"));
+			((ThreadPoolExecutor) this.executor).allowCoreThreadTimeOut(true);
+			this.virtualThreads = false;
+			this.running = null;
+		}
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+				new NamedThreadFactory("hl7v2-validation-watchdog"));
+		scheduler.setRemoveOnCancelPolicy(true);
+		this.watchdog = scheduler;
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Runs the validation and waits for its result. As for the asynchronous validations, the
+	 * timeout starts when the validation starts running, not while it waits in the queue.
+	 * 
+	 * @param task
+	 * @param timeoutMillis
+	 *            : 0 or less for no timeout
+	 * @return
+	 * @throws Exception
+	 *             the exception thrown by the task, {@link ValidationRejectedException} or
+	 *             {@link ValidationTimeoutException}
+	 */
+	public <T> T execute(Callable<T> task, long timeoutMillis) throws Exception {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		FutureTask<Void> future = newAsyncTask(task, timeoutMillis, result, null);
+		if (!admission.tryAcquire()) {
+			throw reject();
+		}
+		start(future);
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new MessageValidationException("Validation interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Runs the validation without blocking the caller. The timeout starts when the validation
+	 * starts running.
+	 * 
+	 * @param task
+	 * @param timeoutMillis
+	 *            : 0 or less for no timeout
+	 * @return a future completed with the result of the task, or exceptionally with the
+	 *         exception thrown by the task, {@link ValidationRejectedException} or
+	 *         {@link ValidationTimeoutException}
+	 */
+	public <T> CompletableFuture<T> executeAsync(final Callable<T> task, final long timeoutMillis) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		FutureTask<Void> future = newAsyncTask(task, timeoutMillis, result, null);
+		if (!admission.tryAcquire()) {
+			result.completeExceptionally(reject());
+			return result;
+		}
+		try {
+			start(future);
+		} catch (ValidationRejectedException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Queues the validation, waiting for room in the queue when it is full, and runs it without
+	 * blocking the caller. The timeout starts when the validation starts running. Used by batch
+	 * validations, which share the cap and the queue with single validations.
+	 * 
+	 * @param task
+	 * @param timeoutMillis
+	 *            : 0 or less for no timeout
+	 * @param onFinish
+	 *            : run once the task no longer holds a thread: after it returned, timed out and
+	 *            stopped, or was cancelled before it started. May be null.
+	 * @return a future completed as for {@link #executeAsync(Callable, long)}
+	 * @throws InterruptedException
+	 *             if the caller is interrupted while waiting for room in the queue
+	 */
+	public <T> CompletableFuture<T> enqueue(final Callable<T> task, final long timeoutMillis,
+			final Runnable onFinish) throws InterruptedException {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		FutureTask<Void> future = newAsyncTask(task, timeoutMillis, result, onFinish);
+		admission.acquire();
+		try {
+			start(future);
+		} catch (ValidationRejectedException e) {
+			result.completeExceptionally(e);
+			if (onFinish != null) {
+				onFinish.run();
+			}
+		}
+		return result;
+	}
+
+	private <T> FutureTask<Void> newAsyncTask(final Callable<T> task, final long timeoutMillis,
+			final CompletableFuture<T> result, final Runnable onFinish) {
+		final AtomicReference<Future<?>> self = new AtomicReference<Future<?>>();
+		Runnable onStart = null;
+		if (timeoutMillis > 0) {
+			onStart = new Runnable() {
+				@Override
+				public void run() {
+					final ScheduledFuture<?> deadline = watchdog.schedule(new Runnable() {
+						@Override
+						public void run() {
+							if (result.completeExceptionally(new ValidationTimeoutException(
+									"Validation did not complete within " + timeoutMillis + " ms"))) {
+								timedOut.incrementAndGet();
+								self.get().cancel(true);
+							}
+						}
+					}, timeoutMillis, TimeUnit.MILLISECONDS);
+					result.whenComplete(new BiConsumer<T, Throwable>() {
+						@Override
+						public void accept(T t, Throwable u) {
+							deadline.cancel(false);
+						}
+					});
+				}
+			};
+		}
+		FutureTask<Void> future = newTask(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					result.complete(task.call());
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				}
+				return null;
+			}
+		}, onStart, new Runnable() {
+			@Override
+			public void run() {
+				// no-op unless the task was cancelled before it started
+				result.completeExceptionally(new MessageValidationException("Validation cancelled"));
+				if (onFinish != null) {
+					onFinish.run();
+				}
+			}
+		});
+		self.set(future);
+		return future;
+	}
+
+	/**
+	 * Wraps the task so that the admission permit is released, and onFinish run, exactly once:
+	 * when the task returns, or when it is cancelled before it started. A cancelled running task
+	 * keeps its permit until its thread is actually done with it.
+	 */
+	private <T> FutureTask<T> newTask(final Callable<T> task, final Runnable onStart, final Runnable onFinish) {
+		final AtomicBoolean claimed = new AtomicBoolean();
+		return new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				if (!claimed.compareAndSet(false, true)) {
+					return null;
+				}
+				try {
+					if (running != null) {
+						running.acquire();
+					}
+					active.incrementAndGet();
+					try {
+						if (onStart != null) {
+							onStart.run();
+						}
+						return task.call();
+					} finally {
+						active.decrementAndGet();
+						completed.incrementAndGet();
+						if (running != null) {
+							running.release();
+						}
+					}
+				} finally {
+					finish(onFinish);
+				}
+			}
+		}) {
+			@Override
+			protected void done() {
+				if (isCancelled() && claimed.compareAndSet(false, true)) {
+					finish(onFinish);
+				}
+			}
+		};
+	}
+
+	private void finish(Runnable onFinish) {
+		admission.release();
+		if (onFinish != null) {
+			onFinish.run();
+		}
+	}
+
+	/**
+	 * Hands an admitted task to the executor
+	 */
+	private void start(FutureTask<?> future) throws ValidationRejectedException {
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			admission.release();
+			throw reject();
+		}
+	}
+
+	private ValidationRejectedException reject() {
+		rejected.incrementAndGet();
+		return new ValidationRejectedException("Too many validations in progress, try again later");
+	}
+
+	public void shutdown() {
+		watchdog.shutdownNow();
+		for (Runnable queued : executor.shutdownNow()) {
+			if (queued instanceof Future) {
+				((Future<?>) queued).cancel(false);
+			}
+		}
+	}
+
+	public Statistics getStatistics() {
+		int queued;
+		if (executor instanceof ThreadPoolExecutor) {
+			queued = ((ThreadPoolExecutor) executor).getQueue().size();
+		} else {
+			queued = Math.max(0, concurrency + queueCapacity - admission.availablePermits() - active.get());
+		}
+		return new Statistics(virtualThreads, concurrency, queueCapacity,
+				concurrency + queueCapacity - admission.availablePermits(), active.get(), queued, completed.get(),
+				rejected.get(), timedOut.get());
+	}
+
+	public static class Statistics {
+		private final boolean virtualThreads;
+		private final int concurrency;
+		private final int queueCapacity;
+		private final int admitted;
+		private final int active;
+		private final int queued;
+		private final long completed;
+		private final long rejected;
+		private final long timedOut;
+
+		public Statistics(boolean virtualThreads, int concurrency, int queueCapacity, int admitted, int active,
+				int queued, long completed, long rejected, long timedOut) {
+			this.virtualThreads = virtualThreads;
+			this.concurrency = concurrency;
+			this.queueCapacity = queueCapacity;
+			this.admitted = admitted;
+			this.active = active;
+			this.queued = queued;
+			this.completed = completed;
+			this.rejected = rejected;
+			this.timedOut = timedOut;
+		}
+
+		public boolean isVirtualThreads() {
+			return virtualThreads;
+		}
+
+		public int getConcurrency() {
+			return concurrency;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		/**
+		 * @return the validations queued or running, each holding one of the concurrency +
+		 *         queueCapacity permits
+		 */
+		public int getAdmitted() {
+			return admitted;
+		}
+
+		public int getActive() {
+			return active;
+		}
+
+		public int getQueued() {
+			return queued;
+		}
+
+		public long getCompleted() {
+			return completed;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		public long getTimedOut() {
+			return timedOut;
+		}
+	}
+
+}
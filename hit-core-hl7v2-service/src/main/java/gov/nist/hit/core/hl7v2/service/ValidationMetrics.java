@@ -0,0 +1,48 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.List;
+
+/**
+ * Latency of the stages of message validation and parsing, per test context and conformance
+ * profile
+ * 
+ * @author Harold Affo
+ * 
+ */
+public interface ValidationMetrics {
+
+	public static final String PROFILE_DESERIALIZATION = "profileDeserialization";
+	public static final String CONFORMANCE_CONTEXT = "conformanceContext";
+	public static final String VALUE_SET_LIBRARY = "valueSetLibrary";
+	public static final String VALIDATION = "validation";
+	public static final String VALIDATION_LOG = "validationLog";
+	public static final String REPORT_RENDERING = "reportRendering";
+	public static final String MESSAGE_PARSE = "messageParse";
+	public static final String MESSAGE_MODEL = "messageModel";
+
+	/**
+	 * 
+	 * @param stage
+	 * @param testContextId
+	 * @param profileId
+	 * @param nanos
+	 *            : duration of the stage
+	 */
+	public void record(String stage, Long testContextId, String profileId, long nanos);
+
+	public List<StageMetrics> getStages();
+
+	public void reset();
+
+}
@@ -0,0 +1,183 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Reduces a json validation report to its errors. Informational and affirmative entries are
+ * dropped, whether they are grouped under a classification key or carry a classification
+ * property, and only the first errors are kept when a limit is given.
+ *
+ * The report is copied in a single streaming pass: dropped sections are skipped without being
+ * materialized and only one report entry at a time is held as a tree.
+ *
+ * @author Harold Affo
+ *
+ */
+public class ValidationReportFilter {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static final Set<String> SKIPPED = new HashSet<String>(
+			Arrays.asList("informational", "affirmative", "info"));
+
+	private static final String ERROR = "error";
+
+	private static final String CLASSIFICATION = "classification";
+
+	private ValidationReportFilter() {
+	}
+
+	/**
+	 *
+	 * @param json
+	 *            : the json report
+	 * @param maxErrors
+	 *            : number of errors kept, 0 or less keeps all of them
+	 * @return the filtered json report
+	 * @throws IOException
+	 */
+	public static String errorsOnly(String json, int maxErrors) throws IOException {
+		if (json == null) {
+			return null;
+		}
+		StringWriter out = new StringWriter(json.length() / 4);
+		JsonParser parser = mapper.getFactory().createParser(json);
+		JsonGenerator generator = mapper.getFactory().createGenerator(out);
+		try {
+			if (parser.nextToken() != null) {
+				copy(parser, generator, false, new int[] { maxErrors > 0 ? maxErrors : Integer.MAX_VALUE });
+			}
+		} finally {
+			generator.close();
+			parser.close();
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Copies the value starting at the current token of the parser, leaving out what the errors
+	 * only report drops
+	 */
+	private static void copy(JsonParser parser, JsonGenerator generator, boolean inError, int[] remaining)
+			throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.START_OBJECT) {
+			generator.writeStartObject();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				String key = name.toLowerCase();
+				JsonToken value = parser.nextToken();
+				if (SKIPPED.contains(key) && (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY)) {
+					parser.skipChildren();
+				} else {
+					generator.writeFieldName(name);
+					copy(parser, generator, inError || ERROR.equals(key), remaining);
+				}
+			}
+			generator.writeEndObject();
+		} else if (token == JsonToken.START_ARRAY) {
+			generator.writeStartArray();
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+					JsonNode element = mapper.readTree(parser);
+					if (keep(element, inError, remaining)) {
+						generator.writeTree(element);
+					}
+				} else {
+					copy(parser, generator, inError, remaining);
+				}
+			}
+			generator.writeEndArray();
+		} else {
+			generator.copyCurrentEvent(parser);
+		}
+	}
+
+	/**
+	 *
+	 * @param element
+	 *            : an object element of an array, filtered in place when kept
+	 * @param inError
+	 *            : whether the element is grouped under an error classification key
+	 * @param remaining
+	 *            : number of errors that can still be kept
+	 * @return whether the element is kept
+	 */
+	private static boolean keep(JsonNode element, boolean inError, int[] remaining) {
+		String classification = element.has(CLASSIFICATION) ? element.get(CLASSIFICATION).asText().toLowerCase()
+				: null;
+		if (classification != null && SKIPPED.contains(classification)) {
+			return false;
+		}
+		if (ERROR.equals(classification) || (classification == null && inError)) {
+			if (remaining[0] > 0) {
+				remaining[0]--;
+				return true;
+			}
+			return false;
+		}
+		filter(element, inError, remaining);
+		return true;
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @param inError
+	 *            : whether the node is grouped under an error classification key
+	 * @param remaining
+	 *            : number of errors that can still be kept
+	 */
+	private static void filter(JsonNode node, boolean inError, int[] remaining) {
+		if (node.isObject()) {
+			Iterator<Map.Entry<String, JsonNode>> fields = ((ObjectNode) node).fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				String key = field.getKey().toLowerCase();
+				if (SKIPPED.contains(key) && field.getValue().isContainerNode()) {
+					fields.remove();
+				} else {
+					filter(field.getValue(), inError || ERROR.equals(key), remaining);
+				}
+			}
+		} else if (node.isArray()) {
+			Iterator<JsonNode> elements = ((ArrayNode) node).elements();
+			while (elements.hasNext()) {
+				JsonNode element = elements.next();
+				if (element.isObject()) {
+					if (!keep(element, inError, remaining)) {
+						elements.remove();
+					}
+				} else {
+					filter(element, inError, remaining);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.util.UUID;
+
+import gov.nist.healthcare.unified.model.EnhancedReport;
+
+/**
+ * A validation report whose JSON, HTML and XML representations are rendered the first time they
+ * are requested and kept afterwards.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class ValidationReportHandle {
+
+	public static final String JSON = "json";
+	public static final String HTML = "html";
+	public static final String XML = "xml";
+
+	private final String id;
+	private final EnhancedReport report;
+	private String json;
+	private String html;
+	private String xml;
+
+	public ValidationReportHandle(EnhancedReport report) {
+		this.id = UUID.randomUUID().toString();
+		this.report = report;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public EnhancedReport getReport() {
+		return report;
+	}
+
+	public synchronized String json() {
+		if (json == null) {
+			json = report.to("json").toString();
+		}
+		return json;
+	}
+
+	public synchronized String html() {
+		if (html == null) {
+			html = report.render("report", null);
+		}
+		return html;
+	}
+
+	public synchronized String xml(HL7V2ValidationReportConverter converter) throws Exception {
+		if (xml == null) {
+			xml = converter.toXML(report);
+		}
+		return xml;
+	}
+
+	/**
+	 * 
+	 * @param format
+	 *            : json, html or xml
+	 * @param converter
+	 *            : converter used for the xml format
+	 * @return the report in the requested format
+	 * @throws Exception
+	 */
+	public String render(String format, HL7V2ValidationReportConverter converter) throws Exception {
+		if (JSON.equalsIgnoreCase(format)) {
+			return json();
+		} else if (HTML.equalsIgnoreCase(format)) {
+			return html();
+		} else if (XML.equalsIgnoreCase(format)) {
+			return xml(converter);
+		}
+		throw new IllegalArgumentException("Unsupported report format " + format);
+	}
+
+}
@@ -0,0 +1,60 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import gov.nist.healthcare.unified.model.EnhancedReport;
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
+
+/**
+ * Keeps recent validation reports so that their representations can be fetched by id after the
+ * validation returned.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class ValidationReportStore {
+
+	private final BoundedCache<String, ValidationReportHandle> reports;
+
+	public ValidationReportStore(int maxSize, long ttlMillis) {
+		this.reports = new BoundedCache<String, ValidationReportHandle>("validationReports", maxSize, ttlMillis);
+	}
+
+	public ValidationReportHandle store(EnhancedReport report) {
+		ValidationReportHandle handle = new ValidationReportHandle(report);
+		reports.put(handle.getId(), handle);
+		return handle;
+	}
+
+	/**
+	 * 
+	 * @param reportId
+	 * @return the report or null if unknown or expired
+	 */
+	public ValidationReportHandle get(String reportId) {
+		return reports.getIfPresent(reportId);
+	}
+
+	public void setMaxSize(int maxSize) {
+		reports.setMaxSize(maxSize);
+	}
+
+	public void setTtlMillis(long ttlMillis) {
+		reports.setTtlMillis(ttlMillis);
+	}
+
+	public CacheStatistics getStatistics() {
+		return reports.getStatistics();
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
+
+/**
+ * Reports of previous validations, keyed by a digest of the normalized message and the versions
+ * of the test context resources. A change of the profile, constraints or value sets changes the
+ * key, so stale reports are never returned and simply age out.
+ * 
+ * The reports are kept as JSON: each hit gets its own report instance that the caller can
+ * modify.
+ * 
+ * @author Harold Affo
+ * 
+ */
+public class ValidationResultCache {
+
+	private final BoundedCache<String, String> reports;
+
+	public ValidationResultCache(int maxSize, long ttlMillis) {
+		this.reports = new BoundedCache<String, String>("validationResults", maxSize, ttlMillis);
+	}
+
+	public String key(String message, ValidationContextKey contextKey, String contextType) {
+		return digest(normalize(message)) + "|" + contextType + "|" + contextKey;
+	}
+
+	public String get(String key) {
+		return reports.getIfPresent(key);
+	}
+
+	public void put(String key, String json) {
+		reports.put(key, json);
+	}
+
+	public void invalidateAll() {
+		reports.invalidateAll();
+	}
+
+	public void setMaxSize(int maxSize) {
+		reports.setMaxSize(maxSize);
+	}
+
+	public void setTtlMillis(long ttlMillis) {
+		reports.setTtlMillis(ttlMillis);
+	}
+
+	public CacheStatistics getStatistics() {
+		return reports.getStatistics();
+	}
+
+	/**
+	 * Unifies the segment separators so that the same message sent from different platforms gets
+	 * the same key. Other whitespace may be field content and is kept.
+	 * 
+	 * @param message
+	 * @return
+	 */
+	static String normalize(String message) {
+		return message.replace("\r\n", "\r").replace('\n', '\r');
+	}
+
+	static String digest(String content) {
+		return HL7V2Util.sha256(content);
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+/**
+ * Builds the validation and parsing artifacts of every test context ahead of the first
+ * validations
+ *
+ * @author Harold Affo
+ *
+ */
+public interface ValidationWarmup {
+
+	/**
+	 * Starts the warm-up in the background unless it already started
+	 *
+	 * @return true if this call started it
+	 */
+	boolean start();
+
+	/**
+	 *
+	 * @return the progress of the warm-up
+	 */
+	WarmupStatus getStatus();
+
+	/**
+	 *
+	 * @return true once traffic can be routed to this instance
+	 */
+	boolean isReady();
+
+}
@@ -0,0 +1,87 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the progress of the {@link ValidationWarmup}
+ *
+ * @author Harold Affo
+ *
+ */
+public class WarmupStatus implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum State {
+		NOT_STARTED, RUNNING, COMPLETED, TIMED_OUT, FAILED, DISABLED
+	}
+
+	private final State state;
+	private final int total;
+	private final int warmed;
+	private final int failed;
+	private final int skipped;
+	private final long elapsedMillis;
+
+	public WarmupStatus(State state, int total, int warmed, int failed, int skipped, long elapsedMillis) {
+		this.state = state;
+		this.total = total;
+		this.warmed = warmed;
+		this.failed = failed;
+		this.skipped = skipped;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getWarmed() {
+		return warmed;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 *
+	 * @return the number of test contexts not warmed because the caches were already full
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * The warm-up is over, whether every test context could be warmed or not
+	 *
+	 * @return
+	 */
+	public boolean isReady() {
+		return state != State.NOT_STARTED && state != State.RUNNING;
+	}
+
+	public double getProgress() {
+		return total == 0 ? (isReady() ? 1 : 0) : (double) (warmed + failed + skipped) / total;
+	}
+
+}
@@ -0,0 +1,30 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.exception;
+
+import gov.nist.hit.core.service.exception.MessageValidationException;
+
+/**
+ * Thrown when the validation executor is saturated and its wait queue is full
+ *
+ * @author Harold Affo
+ *
+ */
+public class ValidationRejectedException extends MessageValidationException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ValidationRejectedException(String message) {
+		super(message);
+	}
+
+}
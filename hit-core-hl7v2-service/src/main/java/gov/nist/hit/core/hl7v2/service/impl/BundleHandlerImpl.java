@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.zip.ZipEntry;
@@ -34,15 +36,15 @@ import gov.nist.hit.core.domain.TestScope;
 import gov.nist.hit.core.domain.TestingStage;
 import gov.nist.hit.core.domain.VocabularyLibrary;
 import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
+import gov.nist.hit.core.hl7v2.service.HL7V2ResourceLoader;
 import gov.nist.hit.core.service.BundleHandler;
-import gov.nist.hit.core.service.ResourceLoader;
 import gov.nist.hit.core.service.exception.ProfileParserException;
 
 @Service
 public class BundleHandlerImpl implements BundleHandler {
 
 	@Autowired
-	private ResourceLoader resourceLoader;
+	private HL7V2ResourceLoader resourceLoader;
 
 	@Override
 	public String unzip(byte[] bytes, String path) throws Exception {
@@ -133,6 +135,7 @@ public class BundleHandlerImpl implements BundleHandler {
 
 		save.vs = v;
 
+		Map<String, String> jsons = jsonConformanceProfiles(testCasesObj, p, c);
 		Iterator<JsonNode> testCasesIter = testCasesObj.findValue("testCases").elements();
 		int i = 1;
 		while (testCasesIter.hasNext()) {
@@ -150,7 +153,7 @@ public class BundleHandlerImpl implements BundleHandler {
 			cfti.setScope(gtcg.getScope());
 			// ---
 			ConformanceProfile conformanceProfile = new ConformanceProfile();
-			conformanceProfile.setJson(resourceLoader.jsonConformanceProfile(p.getXml(), messageId, c.getXml(), null));
+			conformanceProfile.setJson(jsons.get(messageId));
 			conformanceProfile.setDomain(domain);
 			conformanceProfile.setScope(gtcg.getScope());
 			conformanceProfile.setAuthorUsername(authorUsername);
@@ -181,6 +184,19 @@ public class BundleHandlerImpl implements BundleHandler {
 		return save;
 	}
 
+	/**
+	 * Parses the conformance profiles of all the test cases of the descriptor in one pass
+	 */
+	private Map<String, String> jsonConformanceProfiles(JsonNode testCasesObj, IntegrationProfile p, Constraints c)
+			throws IOException, ProfileParserException {
+		Set<String> messageIds = new LinkedHashSet<String>();
+		Iterator<JsonNode> testCasesIter = testCasesObj.findValue("testCases").elements();
+		while (testCasesIter.hasNext()) {
+			messageIds.add(testCasesIter.next().findValue("messageId").asText());
+		}
+		return resourceLoader.jsonConformanceProfiles(p.getXml(), messageIds, c.getXml(), null);
+	}
+
 	private GVTSaveInstance setSaveInstanceValues(String dir, GVTSaveInstance save, Set<CFTestStep> testSteps,
 			AbstractTestCase tp) throws IOException, ProfileParserException {
 		File testCasesFile = new File(dir + "/TestCases.json");
@@ -224,6 +240,7 @@ public class BundleHandlerImpl implements BundleHandler {
 
 		save.vs = v;
 
+		Map<String, String> jsons = jsonConformanceProfiles(testCasesObj, p, c);
 		Iterator<JsonNode> testCasesIter = testCasesObj.findValue("testCases").elements();
 		int size = testSteps.size();
 		while (testCasesIter.hasNext()) {
@@ -243,7 +260,7 @@ public class BundleHandlerImpl implements BundleHandler {
 
 			// ---
 			ConformanceProfile conformanceProfile = new ConformanceProfile();
-			conformanceProfile.setJson(resourceLoader.jsonConformanceProfile(p.getXml(), messageId, c.getXml(), null));
+			conformanceProfile.setJson(jsons.get(messageId));
 			conformanceProfile.setXml(resourceLoader.getConformanceProfileContent(p.getXml(), messageId));
 			conformanceProfile.setDomain(tp.getDomain());
 			conformanceProfile.setScope(tp.getScope());
@@ -14,12 +14,11 @@ public class HL7V2MessageValidatorImpl extends HL7V2MessageValidator {
 		return super.validate(testContext, command);
 	}
 
-	
-//	public MessageValidationResult validateOnlyErrorsOnly(TestContext testContext, MessageValidationCommand command)
-//			throws MessageValidationException{
-//		return super.validateErrorsOnly(testContext, command);
-//	}
-	
-	
+	@Override
+	public MessageValidationResult validateErrorsOnly(TestContext testContext, MessageValidationCommand command,
+			int maxErrors) throws MessageValidationException {
+		return super.validateErrorsOnly(testContext, command, maxErrors);
+	}
+
 
 }
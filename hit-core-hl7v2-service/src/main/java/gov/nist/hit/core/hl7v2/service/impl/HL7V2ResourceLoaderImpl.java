@@ -4,8 +4,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.persistence.EntityManager;
@@ -15,6 +18,7 @@ import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -63,6 +67,8 @@ public class HL7V2ResourceLoaderImpl extends HL7V2ResourceLoader {
 	private PackagingHandler packagingHandler;
 
 	HL7V2ProfileParser profileParser = new HL7V2ProfileParserImpl();
+
+	private int profileParallelism = 1;
 	ValueSetLibrarySerializer valueSetLibrarySerializer = new ValueSetLibrarySerializerImpl();
 
 	@Autowired
@@ -449,6 +455,52 @@ public class HL7V2ResourceLoaderImpl extends HL7V2ResourceLoader {
 				additionalConstraintsXml);
 	}
 
+	@Override
+	public Map<String, String> jsonConformanceProfiles(String integrationProfileXml,
+			Collection<String> conformanceProfileIds, String constraintsXml, String additionalConstraintsXml)
+			throws ProfileParserException, IOException {
+		Map<String, ProfileModel> models = profileParser.parseAll(integrationProfileXml, conformanceProfileIds,
+				profileParallelism, constraintsXml, additionalConstraintsXml);
+		Map<String, String> jsons = new LinkedHashMap<String, String>();
+		for (Map.Entry<String, ProfileModel> model : models.entrySet()) {
+			jsons.put(model.getKey(), obm.writeValueAsString(model.getValue()));
+		}
+		return jsons;
+	}
+
+	/**
+	 * 
+	 * @param profileParallelism
+	 *            : number of conformance profiles of an integration profile parsed at the same
+	 *            time, 1 to parse them in turn
+	 */
+	@Value("${hl7v2.profile.parallelism:1}")
+	public void setProfileParallelism(int profileParallelism) {
+		this.profileParallelism = profileParallelism;
+	}
+
+	/**
+	 * 
+	 * @param sharedDatatypes
+	 *            : true to share the datatype definitions between the components of the parsed
+	 *            profile models instead of copying them
+	 */
+	@Value("${hl7v2.profile.sharedDatatypes:false}")
+	public void setSharedDatatypes(boolean sharedDatatypes) {
+		profileParser.setSharedDatatypes(sharedDatatypes);
+	}
+
+	/**
+	 * 
+	 * @param randomIds
+	 *            : true to give random ids to the elements of the parsed profile models instead of
+	 *            ids derived from their place in the profile
+	 */
+	@Value("${hl7v2.profile.randomIds:false}")
+	public void setRandomIds(boolean randomIds) {
+		profileParser.setRandomIds(randomIds);
+	}
+
 	@Override
 	public VocabularyLibrary vocabLibrary(String content, String domain, TestScope scope, String authorUsername,
 			boolean preloaded) throws JsonGenerationException, JsonMappingException, IOException {
@@ -0,0 +1,90 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import gov.nist.hit.core.hl7v2.service.HL7V2Util;
+import gov.nist.hit.core.hl7v2.service.ProfileCache;
+import gov.nist.hit.core.hl7v2.service.ValidationMetrics;
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
+import hl7.v2.profile.Profile;
+import hl7.v2.profile.XMLDeserializer;
+
+/**
+ * {@link ProfileCache} keyed by the fingerprint of the conformance profile id and xml, so an
+ * updated profile never hits the entry of its previous version
+ *
+ * @author Harold Affo
+ *
+ */
+@Service
+public class ProfileCacheImpl implements ProfileCache {
+
+	@Autowired(required = false)
+	private ValidationMetrics validationMetrics;
+
+	private final BoundedCache<String, Profile> profiles = new BoundedCache<String, Profile>("profiles", 128, 0);
+
+	@Override
+	public Profile getProfile(final String conformanceProfileId, final String profileXml) throws Exception {
+		if (profileXml == null) {
+			return null;
+		}
+		return profiles.get(HL7V2Util.fingerprint(conformanceProfileId, profileXml),
+				new BoundedCache.Loader<String, Profile>() {
+					@Override
+					public Profile load(String key) throws Exception {
+						long start = System.nanoTime();
+						Profile profile = XMLDeserializer.deserialize(IOUtils.toInputStream(profileXml)).get();
+						if (validationMetrics != null) {
+							validationMetrics.record(ValidationMetrics.PROFILE_DESERIALIZATION, null,
+									conformanceProfileId, System.nanoTime() - start);
+						}
+						return profile;
+					}
+				});
+	}
+
+	@Override
+	public void invalidateAll() {
+		profiles.invalidateAll();
+	}
+
+	@Override
+	public CacheStatistics getStatistics() {
+		return profiles.getStatistics();
+	}
+
+	@Value("${hl7v2.profileCache.maxSize:128}")
+	public void setMaxSize(int maxSize) {
+		profiles.setMaxSize(maxSize);
+	}
+
+	@Value("${hl7v2.profileCache.ttlMillis:0}")
+	public void setTtlMillis(long ttlMillis) {
+		profiles.setTtlMillis(ttlMillis);
+	}
+
+	public ValidationMetrics getValidationMetrics() {
+		return validationMetrics;
+	}
+
+	public void setValidationMetrics(ValidationMetrics validationMetrics) {
+		this.validationMetrics = validationMetrics;
+	}
+
+}
@@ -0,0 +1,297 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.impl;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import gov.nist.hit.core.hl7v2.domain.MessageHeader;
+import gov.nist.hit.core.hl7v2.domain.ProfileCandidate;
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.HL7V2Util;
+import gov.nist.hit.core.hl7v2.service.ProfileIndex;
+import gov.nist.hit.core.hl7v2.service.util.NamedThreadFactory;
+
+/**
+ * Hash based {@link ProfileIndex}. The metadata of each conformance profile is read from the
+ * attributes of its Message element with a streaming parser, and kept by conformance profile id,
+ * source id and SHA-256 of the xml so that a refresh only parses the profiles that changed. Each
+ * conformance profile is loaded once per refresh, however many test contexts share it.
+ * Once built, the index is rebuilt in the background when it is older than
+ * hl7v2.profileIndex.refreshMillis, the lookups using the previous index meanwhile.
+ *
+ * @author Harold Affo
+ *
+ */
+@Service
+public class ProfileIndexImpl implements ProfileIndex {
+
+	static final Logger logger = LoggerFactory.getLogger(ProfileIndexImpl.class);
+
+	private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+	static {
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private static class ProfileMetadata {
+		String type;
+		String event;
+		String structId;
+		String identifier;
+	}
+
+	private static class Snapshot {
+		final Map<String, List<ProfileCandidate>> entries;
+		final Map<String, ProfileMetadata> metadata;
+		final int size;
+		final long builtAt;
+
+		Snapshot(Map<String, List<ProfileCandidate>> entries, Map<String, ProfileMetadata> metadata, int size,
+				long builtAt) {
+			this.entries = entries;
+			this.metadata = metadata;
+			this.size = size;
+			this.builtAt = builtAt;
+		}
+	}
+
+	@Autowired
+	private HL7V2TestContextRepository testContextRepository;
+
+	private long refreshMillis = 10 * 60 * 1000L;
+
+	private volatile Snapshot snapshot;
+
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+
+	private final ExecutorService refresher = Executors
+			.newSingleThreadExecutor(new NamedThreadFactory("hl7v2-profile-index"));
+
+	@Override
+	public List<ProfileCandidate> findCandidates(MessageHeader header) {
+		if (header == null) {
+			return Collections.emptyList();
+		}
+		Map<String, List<ProfileCandidate>> entries = current().entries;
+		Map<Long, ProfileCandidate> candidates = new LinkedHashMap<Long, ProfileCandidate>();
+		for (String identifier : header.getProfileIdentifiers()) {
+			add(candidates, entries.get(identifierKey(identifier)));
+		}
+		if (header.getMessageType() != null) {
+			if (header.getStructureId() != null) {
+				add(candidates,
+						entries.get(structureKey(header.getMessageType(), header.getEvent(), header.getStructureId())));
+			}
+			add(candidates, entries.get(eventKey(header.getMessageType(), header.getEvent())));
+		}
+		return new ArrayList<ProfileCandidate>(candidates.values());
+	}
+
+	private void add(Map<Long, ProfileCandidate> candidates, List<ProfileCandidate> matches) {
+		if (matches != null) {
+			for (ProfileCandidate match : matches) {
+				if (!candidates.containsKey(match.getTestContextId())) {
+					candidates.put(match.getTestContextId(), match);
+				}
+			}
+		}
+	}
+
+	private Snapshot current() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			synchronized (this) {
+				if (snapshot == null) {
+					refresh();
+				}
+				return snapshot;
+			}
+		}
+		if (refreshMillis > 0 && System.currentTimeMillis() - current.builtAt > refreshMillis
+				&& refreshing.compareAndSet(false, true)) {
+			refresher.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						refresh();
+					} catch (RuntimeException e) {
+						logger.warn("Cannot refresh the profile index: " + e.getMessage(), e);
+					} finally {
+						refreshing.set(false);
+					}
+				}
+			});
+		}
+		return current;
+	}
+
+	@Override
+	public synchronized void refresh() {
+		long start = System.currentTimeMillis();
+		Map<String, ProfileMetadata> previous = snapshot != null ? snapshot.metadata
+				: Collections.<String, ProfileMetadata> emptyMap();
+		Map<String, ProfileMetadata> metadata = new HashMap<String, ProfileMetadata>();
+		Map<String, List<ProfileCandidate>> entries = new HashMap<String, List<ProfileCandidate>>();
+		// version of each conformance profile seen by this refresh, null when it cannot be indexed
+		Map<Object, String> versions = new HashMap<Object, String>();
+		int size = 0;
+		for (Object[] row : testContextRepository.findConformanceProfileSummaries()) {
+			Long testContextId = (Long) row[0];
+			String sourceId = (String) row[2];
+			String version;
+			ProfileMetadata profile;
+			if (versions.containsKey(row[1])) {
+				version = versions.get(row[1]);
+				if (version == null) {
+					continue;
+				}
+				profile = metadata.get(version);
+			} else {
+				String xml = testContextRepository.findConformanceProfileXmlByTestContextId(testContextId);
+				version = xml != null ? HL7V2Util.fingerprint(row[1] + ":" + sourceId, xml) : null;
+				versions.put(row[1], version);
+				if (version == null) {
+					continue;
+				}
+				profile = previous.get(version);
+				if (profile == null) {
+					try {
+						profile = read(xml, sourceId);
+					} catch (XMLStreamException e) {
+						logger.warn(
+								"Cannot index the profile of test context " + testContextId + ": " + e.getMessage());
+						versions.put(row[1], null);
+						continue;
+					}
+				}
+			}
+			metadata.put(version, profile);
+			if (profile.identifier != null) {
+				put(entries, identifierKey(profile.identifier),
+						new ProfileCandidate(testContextId, sourceId, ProfileCandidate.Match.PROFILE_IDENTIFIER));
+			}
+			if (profile.type != null) {
+				if (profile.structId != null) {
+					put(entries, structureKey(profile.type, profile.event, profile.structId),
+							new ProfileCandidate(testContextId, sourceId, ProfileCandidate.Match.STRUCTURE));
+				}
+				put(entries, eventKey(profile.type, profile.event),
+						new ProfileCandidate(testContextId, sourceId, ProfileCandidate.Match.EVENT));
+			}
+			size++;
+		}
+		snapshot = new Snapshot(entries, metadata, size, System.currentTimeMillis());
+		logger.info("Indexed " + size + " test contexts in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	private void put(Map<String, List<ProfileCandidate>> entries, String key, ProfileCandidate candidate) {
+		List<ProfileCandidate> candidates = entries.get(key);
+		if (candidates == null) {
+			candidates = new ArrayList<ProfileCandidate>(1);
+			entries.put(key, candidates);
+		}
+		candidates.add(candidate);
+	}
+
+	/**
+	 * Reads the attributes of the Message element of the profile with the given id, or of the
+	 * first Message element when none has that id
+	 */
+	private ProfileMetadata read(String xml, String messageId) throws XMLStreamException {
+		ProfileMetadata first = null;
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && "Message".equals(reader.getLocalName())) {
+					ProfileMetadata profile = new ProfileMetadata();
+					profile.type = attribute(reader, "Type");
+					profile.event = attribute(reader, "Event");
+					profile.structId = attribute(reader, "StructID");
+					profile.identifier = attribute(reader, "Identifier");
+					if (messageId == null || messageId.equals(attribute(reader, "ID"))) {
+						return profile;
+					}
+					if (first == null) {
+						first = profile;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return first != null ? first : new ProfileMetadata();
+	}
+
+	private String attribute(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+	private String identifierKey(String identifier) {
+		return "I|" + identifier.toUpperCase();
+	}
+
+	private String structureKey(String type, String event, String structId) {
+		return "S|" + type + "^" + event + "^" + structId;
+	}
+
+	private String eventKey(String type, String event) {
+		return "E|" + type + "^" + event;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		refresher.shutdownNow();
+	}
+
+	@Override
+	public int size() {
+		return current().size;
+	}
+
+	public void setTestContextRepository(HL7V2TestContextRepository testContextRepository) {
+		this.testContextRepository = testContextRepository;
+	}
+
+	public long getRefreshMillis() {
+		return refreshMillis;
+	}
+
+	@Value("${hl7v2.profileIndex.refreshMillis:600000}")
+	public void setRefreshMillis(long refreshMillis) {
+		this.refreshMillis = refreshMillis;
+	}
+
+}
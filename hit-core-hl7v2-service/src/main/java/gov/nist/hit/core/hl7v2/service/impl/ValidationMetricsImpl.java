@@ -0,0 +1,62 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Service;
+
+import gov.nist.hit.core.hl7v2.service.StageMetrics;
+import gov.nist.hit.core.hl7v2.service.ValidationMetrics;
+import gov.nist.hit.core.hl7v2.service.util.LatencyHistogram;
+
+@Service
+public class ValidationMetricsImpl implements ValidationMetrics {
+
+	private final ConcurrentMap<List<Object>, LatencyHistogram> histograms = new ConcurrentHashMap<List<Object>, LatencyHistogram>();
+
+	@Override
+	public void record(String stage, Long testContextId, String profileId, long nanos) {
+		List<Object> key = Arrays.<Object> asList(stage, testContextId, profileId);
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram == null) {
+			LatencyHistogram created = new LatencyHistogram();
+			histogram = histograms.putIfAbsent(key, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		histogram.record(nanos);
+	}
+
+	@Override
+	public List<StageMetrics> getStages() {
+		List<StageMetrics> stages = new ArrayList<StageMetrics>();
+		for (Map.Entry<List<Object>, LatencyHistogram> entry : histograms.entrySet()) {
+			List<Object> key = entry.getKey();
+			stages.add(new StageMetrics((String) key.get(0), (Long) key.get(1), (String) key.get(2),
+					entry.getValue().snapshot()));
+		}
+		return stages;
+	}
+
+	@Override
+	public void reset() {
+		histograms.clear();
+	}
+
+}
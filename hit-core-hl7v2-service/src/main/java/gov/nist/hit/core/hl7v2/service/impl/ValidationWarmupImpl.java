@@ -0,0 +1,305 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.impl;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import gov.nist.hit.core.hl7v2.domain.HL7V2TestContext;
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.HL7V2MessageValidator;
+import gov.nist.hit.core.hl7v2.service.HL7V2Util;
+import gov.nist.hit.core.hl7v2.service.ProfileCache;
+import gov.nist.hit.core.hl7v2.service.ProfileIndex;
+import gov.nist.hit.core.hl7v2.service.ValidationContextKey;
+import gov.nist.hit.core.hl7v2.service.ValidationWarmup;
+import gov.nist.hit.core.hl7v2.service.WarmupStatus;
+import gov.nist.hit.core.hl7v2.service.util.NamedThreadFactory;
+
+/**
+ * Warms the test contexts once the application context is refreshed: profile index, compiled
+ * validation context and deserialized profile. The test contexts are processed in parallel on a
+ * pool sized by hl7v2.warmup.concurrency. The warm-up stops when hl7v2.warmup.timeBudgetMillis
+ * is spent (0 for no limit), the remaining test contexts being built on first use. Test contexts
+ * sharing resources are built once, and the warm-up stops building once the distinct compiled
+ * contexts and profiles reach the capacity of their caches, so it never evicts its own work.
+ *
+ * @author Harold Affo
+ *
+ */
+@Service
+public class ValidationWarmupImpl implements ValidationWarmup, ApplicationListener<ContextRefreshedEvent> {
+
+	static final Logger logger = LoggerFactory.getLogger(ValidationWarmupImpl.class);
+
+	@Autowired
+	private HL7V2TestContextRepository testContextRepository;
+
+	@Autowired(required = false)
+	private HL7V2MessageValidator messageValidator;
+
+	@Autowired(required = false)
+	private ProfileIndex profileIndex;
+
+	@Autowired(required = false)
+	private ProfileCache profileCache;
+
+	@Autowired(required = false)
+	@Qualifier("transactionManager")
+	private PlatformTransactionManager transactionManager;
+
+	private boolean enabled = true;
+
+	private int concurrency = Runtime.getRuntime().availableProcessors();
+
+	private long timeBudgetMillis = 5 * 60 * 1000L;
+
+	private final AtomicBoolean started = new AtomicBoolean();
+
+	private volatile WarmupStatus.State state = WarmupStatus.State.NOT_STARTED;
+	private volatile int total;
+	private final AtomicInteger warmed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final Set<ValidationContextKey> compiledKeys = new HashSet<ValidationContextKey>();
+	private final Set<String> profileKeys = new HashSet<String>();
+	private volatile int compiledCapacity = Integer.MAX_VALUE;
+	private volatile int profileCapacity = Integer.MAX_VALUE;
+	private volatile long startedAt;
+	private volatile long endedAt;
+	private volatile ExecutorService executor;
+
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		start();
+	}
+
+	@Override
+	public boolean start() {
+		if (!started.compareAndSet(false, true)) {
+			return false;
+		}
+		startedAt = System.currentTimeMillis();
+		if (!enabled || (messageValidator == null && profileCache == null)) {
+			state = WarmupStatus.State.DISABLED;
+			endedAt = startedAt;
+			return true;
+		}
+		state = WarmupStatus.State.RUNNING;
+		new NamedThreadFactory("hl7v2-warmup").newThread(new Runnable() {
+			@Override
+			public void run() {
+				warmUp();
+			}
+		}).start();
+		return true;
+	}
+
+	private void warmUp() {
+		try {
+			if (profileIndex != null) {
+				profileIndex.refresh();
+			}
+			List<Long> ids = testContextRepository.findAllIds();
+			total = ids.size();
+			if (messageValidator != null) {
+				compiledCapacity = messageValidator.getValidationContextCacheStatistics().getMaxSize();
+			}
+			if (profileCache != null) {
+				profileCapacity = profileCache.getStatistics().getMaxSize();
+			}
+			logger.info("Warming up " + total + " test contexts with " + concurrency + " threads");
+			executor = Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("hl7v2-warmup"));
+			for (final Long id : ids) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						warmUp(id);
+					}
+				});
+			}
+			executor.shutdown();
+			long remaining = timeBudgetMillis > 0 ? timeBudgetMillis - (System.currentTimeMillis() - startedAt)
+					: Long.MAX_VALUE;
+			if (remaining > 0 && executor.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+				state = WarmupStatus.State.COMPLETED;
+			} else {
+				executor.shutdownNow();
+				state = WarmupStatus.State.TIMED_OUT;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			state = WarmupStatus.State.FAILED;
+		} catch (RuntimeException e) {
+			logger.error("Warm-up failed: " + e.getMessage(), e);
+			state = WarmupStatus.State.FAILED;
+		} finally {
+			endedAt = System.currentTimeMillis();
+			logger.info("Warm-up " + state + " in " + (endedAt - startedAt) + " ms: " + warmed.get() + " warmed, "
+					+ failed.get() + " failed, " + skipped.get() + " skipped out of " + total);
+		}
+	}
+
+	private void warmUp(final Long id) {
+		if (Thread.currentThread().isInterrupted()) {
+			return;
+		}
+		if (isFull()) {
+			skipped.incrementAndGet();
+			return;
+		}
+		try {
+			if (transactionManager != null) {
+				TransactionTemplate template = new TransactionTemplate(transactionManager);
+				template.setReadOnly(true);
+				template.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						warmUp(testContextRepository.findOne(id));
+					}
+				});
+			} else {
+				warmUp(testContextRepository.findOne(id));
+			}
+			warmed.incrementAndGet();
+		} catch (Exception e) {
+			failed.incrementAndGet();
+			logger.warn("Failed to warm up test context " + id + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Builds the artifacts of a test context not already built for another test context, as long
+	 * as their cache has room left
+	 *
+	 * @param testContext
+	 */
+	protected void warmUp(HL7V2TestContext testContext) {
+		if (testContext == null || testContext.getConformanceProfile() == null) {
+			return;
+		}
+		try {
+			if (messageValidator != null
+					&& claim(compiledKeys, ValidationContextKey.of(testContext), compiledCapacity)) {
+				messageValidator.getCompiledValidationContext(testContext);
+			}
+			String sourceId = testContext.getConformanceProfile().getSourceId();
+			String xml = testContext.getConformanceProfile().getXml();
+			if (profileCache != null && claim(profileKeys, HL7V2Util.fingerprint(sourceId, xml), profileCapacity)) {
+				profileCache.getProfile(sourceId, xml);
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reserves a key of a cache for the warm-up
+	 *
+	 * @return false when the key is already warmed or the cache is full
+	 */
+	private <K> boolean claim(Set<K> keys, K key, int capacity) {
+		synchronized (keys) {
+			return keys.size() < capacity && keys.add(key);
+		}
+	}
+
+	private boolean isFull() {
+		synchronized (compiledKeys) {
+			if (messageValidator != null && compiledKeys.size() < compiledCapacity) {
+				return false;
+			}
+		}
+		synchronized (profileKeys) {
+			return profileCache == null || profileKeys.size() >= profileCapacity;
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		ExecutorService current = executor;
+		if (current != null) {
+			current.shutdownNow();
+		}
+	}
+
+	@Override
+	public WarmupStatus getStatus() {
+		long end = state == WarmupStatus.State.RUNNING || state == WarmupStatus.State.NOT_STARTED
+				? System.currentTimeMillis() : endedAt;
+		return new WarmupStatus(state, total, warmed.get(), failed.get(), skipped.get(), startedAt > 0 ? end - startedAt : 0);
+	}
+
+	@Override
+	public boolean isReady() {
+		return getStatus().isReady();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Value("${hl7v2.warmup.enabled:true}")
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	@Value("${hl7v2.warmup.concurrency:0}")
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+	}
+
+	public long getTimeBudgetMillis() {
+		return timeBudgetMillis;
+	}
+
+	@Value("${hl7v2.warmup.timeBudgetMillis:300000}")
+	public void setTimeBudgetMillis(long timeBudgetMillis) {
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+
+	public HL7V2MessageValidator getMessageValidator() {
+		return messageValidator;
+	}
+
+	public void setMessageValidator(HL7V2MessageValidator messageValidator) {
+		this.messageValidator = messageValidator;
+	}
+
+}
@@ -0,0 +1,238 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe LRU cache with an optional time-to-live. Values are computed at most once per key:
+ * concurrent callers asking for the same missing key wait for the first loader instead of
+ * computing it again.
+ *
+ * @author Harold Affo
+ *
+ */
+public class BoundedCache<K, V> {
+
+	public interface Loader<K, V> {
+		V load(K key) throws Exception;
+	}
+
+	private static class Entry<V> {
+		final Future<V> value;
+		final long created;
+
+		Entry(Future<V> value, long created) {
+			this.value = value;
+			this.created = created;
+		}
+	}
+
+	private final String name;
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+	private volatile int maxSize;
+	private volatile long ttlMillis;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 *
+	 * @param name
+	 *            : name reported in the statistics
+	 * @param maxSize
+	 *            : maximum number of entries, 0 disables the cache
+	 * @param ttlMillis
+	 *            : time to live of an entry, 0 or less means no expiration
+	 */
+	public BoundedCache(String name, int maxSize, long ttlMillis) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Returns the cached value of the key or computes it with the loader
+	 *
+	 * @param key
+	 * @param loader
+	 * @return
+	 * @throws Exception
+	 *             the exception thrown by the loader
+	 */
+	public V get(final K key, final Loader<K, V> loader) throws Exception {
+		if (maxSize <= 0) {
+			misses.incrementAndGet();
+			return loader.load(key);
+		}
+		Future<V> future = null;
+		FutureTask<V> task = null;
+		synchronized (entries) {
+			Entry<V> entry = lookup(key);
+			if (entry != null) {
+				hits.incrementAndGet();
+				future = entry.value;
+			} else {
+				misses.incrementAndGet();
+				task = new FutureTask<V>(new Callable<V>() {
+					@Override
+					public V call() throws Exception {
+						return loader.load(key);
+					}
+				});
+				future = task;
+				entries.put(key, new Entry<V>(task, System.currentTimeMillis()));
+				evictOverflow();
+			}
+		}
+		if (task != null) {
+			task.run();
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			synchronized (entries) {
+				Entry<V> entry = entries.get(key);
+				if (entry != null && entry.value == future) {
+					entries.remove(key);
+				}
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Returns the cached value of the key or null when absent, expired or still loading
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V getIfPresent(K key) {
+		if (maxSize <= 0) {
+			return null;
+		}
+		Entry<V> entry;
+		synchronized (entries) {
+			entry = lookup(key);
+		}
+		if (entry != null && entry.value.isDone()) {
+			try {
+				V value = entry.value.get();
+				hits.incrementAndGet();
+				return value;
+			} catch (Exception e) {
+				return null;
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public void put(K key, V value) {
+		if (maxSize <= 0) {
+			return;
+		}
+		FutureTask<V> done = new FutureTask<V>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, value);
+		done.run();
+		synchronized (entries) {
+			entries.put(key, new Entry<V>(done, System.currentTimeMillis()));
+			evictOverflow();
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public CacheStatistics getStatistics() {
+		return new CacheStatistics(name, size(), maxSize, ttlMillis, hits.get(), misses.get(), evictions.get(),
+				expirations.get());
+	}
+
+	private Entry<V> lookup(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && isExpired(entry)) {
+			entries.remove(key);
+			expirations.incrementAndGet();
+			return null;
+		}
+		return entry;
+	}
+
+	private boolean isExpired(Entry<V> entry) {
+		return ttlMillis > 0 && System.currentTimeMillis() - entry.created > ttlMillis;
+	}
+
+	private void evictOverflow() {
+		Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+		while (entries.size() > maxSize && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		synchronized (entries) {
+			evictOverflow();
+		}
+	}
+
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	public void setTtlMillis(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.util;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the statistics of a {@link BoundedCache}
+ *
+ * @author Harold Affo
+ *
+ */
+public class CacheStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String name;
+	private final int size;
+	private final int maxSize;
+	private final long ttlMillis;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long expirations;
+
+	public CacheStatistics(String name, int size, int maxSize, long ttlMillis, long hits, long misses,
+			long evictions, long expirations) {
+		this.name = name;
+		this.size = size;
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.expirations = expirations;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getExpirations() {
+		return expirations;
+	}
+
+	public double getHitRatio() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return name + " [size=" + size + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions="
+				+ evictions + ", expirations=" + expirations + "]";
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+ * This software was developed at the National Institute of Standards and Technology by employees of
+ * the Federal Government in the course of their official duties. Pursuant to title 17 Section 105
+ * of the United States Code this software is not subject to copyright protection and is in the
+ * public domain. This is an experimental system. NIST assumes no responsibility whatsoever for its
+ * use by other parties, and makes no guarantees, expressed or implied, about its quality,
+ * reliability, or any other characteristic. We would appreciate acknowledgement if the software is
+ * used. This software can be redistributed and/or modified freely provided that any derivative
+ * works bear some notice that they are derived from it, and any modified versions bear some notice
+ * that they have been modified.
+ */
+package gov.nist.hit.core.hl7v2.service.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed millisecond buckets
+ *
+ * @author Harold Affo
+ *
+ */
+public class LatencyHistogram {
+
+	static final long[] BOUNDS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(long nanos) {
+		long millis = nanos / 1000000;
+		int i = 0;
+		while (i < BOUNDS.length && millis > BOUNDS[i]) {
+			i++;
+		}
+		buckets.incrementAndGet(i);
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+		}
+	}
+
+	public Snapshot snapshot() {
+		long[] counts = new long[buckets.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return new Snapshot(count.get(), totalNanos.get(), maxNanos.get(), counts);
+	}
+
+	public static class Snapshot {
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long[] counts;
+
+		Snapshot(long count, long totalNanos, long maxNanos, long[] counts) {
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.counts = counts;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getTotalMillis() {
+			return totalNanos / 1e6;
+		}
+
+		public double getMeanMillis() {
+			return count == 0 ? 0 : totalNanos / 1e6 / count;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos / 1e6;
+		}
+
+		public long getP50Millis() {
+			return percentile(0.50);
+		}
+
+		public long getP95Millis() {
+			return percentile(0.95);
+		}
+
+		public long getP99Millis() {
+			return percentile(0.99);
+		}
+
+		/**
+		 * @return the number of samples per upper bound in milliseconds, "+Inf" for the last one
+		 */
+		public Map<String, Long> getBuckets() {
+			Map<String, Long> map = new LinkedHashMap<String, Long>();
+			for (int i = 0; i < counts.length; i++) {
+				map.put(i < BOUNDS.length ? String.valueOf(BOUNDS[i]) : "+Inf", counts[i]);
+			}
+			return map;
+		}
+
+		/**
+		 * @return the upper bound of the bucket holding the percentile, or the max if beyond the
+		 *         last bound
+		 */
+		private long percentile(double p) {
+			long total = 0;
+			for (long c : counts) {
+				total += c;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(p * total);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return i < BOUNDS.length ? BOUNDS[i] : maxNanos / 1000000;
+				}
+			}
+			return maxNanos / 1000000;
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package gov.nist.hit.core.hl7v2.service.message.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.service.Er7BatchReader;
+import gov.nist.hit.core.hl7v2.service.Er7BatchReader.BatchMessage;
+
+public class Er7BatchReaderTest {
+
+  private static final String BATCH = "FHS|^~\\&|APP\r\n" + "BHS|^~\\&|APP\r\n"
+      + "MSH|^~\\&|A|B\r\n" + "PID|1\r\n" + "\r\n" + "MSH|^~\\&|C|D\r\n" + "PID|2\r\n"
+      + "OBX|1\r\n" + "BTS|2\r\n" + "MSH|^~\\&|E|F\n" + "FTS|1\r\n";
+
+  @Test
+  public void testSplitOnMsh() throws Exception {
+    Er7BatchReader reader = new Er7BatchReader(new StringReader(BATCH));
+    BatchMessage m1 = reader.next();
+    assertEquals(0, m1.getIndex());
+    assertEquals(3, m1.getLine());
+    assertEquals("MSH|^~\\&|A|B\rPID|1", m1.getContent());
+    assertEquals("FHS|^~\\&|APP", m1.getFileHeader());
+    assertEquals("BHS|^~\\&|APP", m1.getBatchHeader());
+
+    BatchMessage m2 = reader.next();
+    assertEquals("MSH|^~\\&|C|D\rPID|2\rOBX|1", m2.getContent());
+    assertEquals(6, m2.getLine());
+
+    BatchMessage m3 = reader.next();
+    assertEquals("MSH|^~\\&|E|F", m3.getContent());
+    assertNull(m3.getBatchHeader());
+    assertEquals("FHS|^~\\&|APP", m3.getFileHeader());
+
+    assertFalse(reader.hasNext());
+    assertEquals(1, reader.getBatchCount());
+    reader.close();
+  }
+
+  @Test
+  public void testSingleMessage() throws Exception {
+    Er7BatchReader reader = new Er7BatchReader(new StringReader("MSH|^~\\&|A\nPID|1\n"));
+    assertEquals("MSH|^~\\&|A\rPID|1", reader.next().getContent());
+    assertFalse(reader.hasNext());
+    reader.close();
+  }
+
+}
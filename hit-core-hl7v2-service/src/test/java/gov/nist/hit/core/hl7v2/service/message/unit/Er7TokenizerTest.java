@@ -0,0 +1,80 @@
+package gov.nist.hit.core.hl7v2.service.message.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.service.Er7Tokenizer;
+import gov.nist.hit.core.hl7v2.service.Er7Tokenizer.Tokens;
+
+public class Er7TokenizerTest {
+
+  private static final String MESSAGE = "MSH|^~\\&#|A|B|||20200101||ORU^R01^ORU_R01|1\r\n"
+      + "PID|1||123^^^X&1.2&ISO~456||Doe^John\r\n" + "\r\n" + "OBX|1\r" + "OBX|2|";
+
+  @Test
+  public void testSeparators() {
+    Tokens tokens = Er7Tokenizer.tokenize("MSH$:*!@|A");
+    assertEquals('$', tokens.getFieldSeparator());
+    assertEquals(':', tokens.getComponentSeparator());
+    assertEquals('*', tokens.getRepetitionSeparator());
+    assertEquals('!', tokens.getEscapeCharacter());
+    assertEquals('@', tokens.getSubComponentSeparator());
+    assertEquals('|', tokens.getTruncationCharacter());
+    tokens = Er7Tokenizer.tokenize(MESSAGE);
+    assertEquals('#', tokens.getTruncationCharacter());
+    assertEquals(0, Er7Tokenizer.tokenize("MSH|^~\\&|A").getTruncationCharacter());
+  }
+
+  @Test
+  public void testMsh() {
+    Tokens tokens = Er7Tokenizer.tokenize(MESSAGE);
+    assertEquals(Er7Tokenizer.SEGMENT, tokens.level(0));
+    assertEquals("MSH", tokens.name(0));
+    assertEquals("|", tokens.value(1));
+    assertEquals(1, tokens.position(1));
+    assertEquals("^~\\&#", tokens.value(2));
+    assertEquals(2, tokens.position(2));
+    assertEquals("A", tokens.value(3));
+    assertEquals(3, tokens.position(3));
+    // MSH-9 and its components
+    assertEquals(9, tokens.position(6));
+    assertEquals(Er7Tokenizer.COMPONENT, tokens.level(9));
+    assertEquals("ORU_R01", tokens.value(9));
+    assertEquals(3, tokens.position(9));
+    assertEquals(6, tokens.parent(9));
+  }
+
+  @Test
+  public void testRepetitionsAndSubComponents() {
+    Tokens tokens = Er7Tokenizer.tokenize(MESSAGE);
+    int pid = 11;
+    assertEquals("PID", tokens.name(pid));
+    assertEquals(2, tokens.line(pid));
+    assertEquals("123^^^X&1.2&ISO", tokens.value(13));
+    assertEquals(1, tokens.instance(13));
+    assertEquals("X&1.2&ISO", tokens.value(15));
+    assertEquals(4, tokens.position(15));
+    assertEquals(Er7Tokenizer.SUB_COMPONENT, tokens.level(17));
+    assertEquals("1.2", tokens.value(17));
+    assertEquals(2, tokens.position(17));
+    assertEquals(16, tokens.column(17));
+    assertEquals("456", tokens.value(19));
+    assertEquals(3, tokens.position(19));
+    assertEquals(2, tokens.instance(19));
+    assertEquals(pid, tokens.parent(19));
+  }
+
+  @Test
+  public void testSegmentOccurrences() {
+    Tokens tokens = Er7Tokenizer.tokenize(MESSAGE);
+    assertEquals("OBX", tokens.name(23));
+    assertEquals(4, tokens.line(23));
+    assertEquals(3, tokens.position(23));
+    assertEquals(1, tokens.instance(23));
+    assertEquals(5, tokens.line(25));
+    assertEquals(2, tokens.instance(25));
+    assertEquals(27, tokens.size());
+  }
+
+}
@@ -13,6 +13,10 @@
 package gov.nist.hit.core.hl7v2.service.message.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gov.nist.hit.core.hl7v2.domain.MessageHeader;
 import gov.nist.hit.core.hl7v2.service.HL7V2Util;
 import gov.nist.hit.core.service.exception.MessageParserException;
 
@@ -45,4 +49,34 @@ public class Er7UtilTest {
 
   }
 
+  @Test
+  public void testReadMessageHeader() {
+    String message = "FHS|^~\\&|\r"
+        + "MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20160101||ORU^R01^ORU_R01|1|P|2.5.1|||||||||LRI_Common_Component^^2.16.840.1.113883.9.16^ISO~LRI_GU_Component^^2.16.840.1.113883.9.12^ISO\r"
+        + "PID|1||123\r";
+    MessageHeader header = HL7V2Util.readMessageHeader(message);
+    assertEquals("ORU", header.getMessageType());
+    assertEquals("R01", header.getEvent());
+    assertEquals("ORU_R01", header.getStructureId());
+    assertEquals(2, header.getProfileIdentifiers().size());
+    assertEquals("LRI_GU_Component", header.getProfileIdentifiers().get(1));
+
+    header = HL7V2Util.readMessageHeader("MSH|^~\\&|A|B|C|D|20160101||ADT^A04|1|P|2.5.1");
+    assertEquals("ADT", header.getMessageType());
+    assertEquals("A04", header.getEvent());
+    assertNull(header.getStructureId());
+    assertTrue(header.getProfileIdentifiers().isEmpty());
+
+    assertNull(HL7V2Util.readMessageHeader("PID|1||123"));
+  }
+
+  @Test
+  public void testFingerprint() {
+    // same length and same String.hashCode
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertFalse(HL7V2Util.fingerprint("p", "Aa").equals(HL7V2Util.fingerprint("p", "BB")));
+    assertEquals(HL7V2Util.fingerprint("p", "Aa"), HL7V2Util.fingerprint("p", new String("Aa")));
+    assertNull(HL7V2Util.fingerprint("p", null));
+  }
+
 }
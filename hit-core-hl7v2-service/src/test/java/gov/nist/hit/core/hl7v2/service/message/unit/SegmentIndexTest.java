@@ -0,0 +1,45 @@
+package gov.nist.hit.core.hl7v2.service.message.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.service.SegmentIndex;
+
+public class SegmentIndexTest {
+
+  private static final String MESSAGE =
+      "MSH|^~\\&|A\r\n" + "PID|1\r\n" + "\r\n" + "OBX|1\r" + "OBX|2\n" + "OBX|3";
+
+  @Test
+  public void testFindByLine() {
+    SegmentIndex index = new SegmentIndex(MESSAGE);
+    assertEquals(5, index.size());
+    assertEquals("PID|1", index.getRaw(index.findByLine(2)));
+    assertEquals(-1, index.findByLine(3));
+    int obx = index.findByLine(5);
+    assertEquals("OBX", index.getId(obx));
+    assertEquals(2, index.getOccurrence(obx));
+    assertEquals(-1, index.findByLine(7));
+  }
+
+  @Test
+  public void testFindById() {
+    SegmentIndex index = new SegmentIndex(MESSAGE);
+    assertEquals("OBX|3", index.getRaw(index.find("OBX", 3)));
+    assertEquals(6, index.getLine(index.find("OBX", 3)));
+    assertEquals(0, index.find("MSH", 1));
+    assertEquals(-1, index.find("OBX", 4));
+    assertEquals(-1, index.find("NTE", 1));
+  }
+
+  @Test
+  public void testFindByOffset() {
+    SegmentIndex index = new SegmentIndex(MESSAGE);
+    assertEquals(0, index.findByOffset(0));
+    assertEquals(12, index.getOffset(1));
+    assertEquals(1, index.findByOffset(14));
+    assertEquals(2, index.findByOffset(index.getOffset(2)));
+  }
+
+}
@@ -0,0 +1,172 @@
+package gov.nist.hit.core.hl7v2.service.profile.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import gov.nist.hit.core.domain.constraints.ByID;
+import gov.nist.hit.core.domain.constraints.ByName;
+import gov.nist.hit.core.domain.constraints.ByNameOrByID;
+import gov.nist.hit.core.domain.constraints.ConformanceStatement;
+import gov.nist.hit.core.domain.constraints.Constraints;
+import gov.nist.hit.core.domain.constraints.Context;
+import gov.nist.hit.core.domain.constraints.Predicate;
+import gov.nist.hit.core.hl7v2.service.ConstraintIndex;
+import gov.nist.hit.core.service.impl.ConstraintsParserImpl;
+
+public class ConstraintIndexTest {
+
+  private static Constraints conformanceStatements;
+  private static Constraints predicates;
+  private static ConstraintIndex index;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    String xml = IOUtils.toString(
+        ConstraintIndexTest.class.getResourceAsStream("/constraints/1_1_2_Constraints.xml"));
+    ConstraintsParserImpl parser = new ConstraintsParserImpl();
+    conformanceStatements = parser.confStatements(xml);
+    predicates = parser.predicates(xml);
+    index = new ConstraintIndex(conformanceStatements, predicates);
+  }
+
+  @Test
+  public void testSameConstraintsAsScan() {
+    for (ConstraintIndex.Type type : ConstraintIndex.Type.values()) {
+      Context statementsContext = context(conformanceStatements, type);
+      Context predicatesContext = context(predicates, type);
+      Set<String> ids = new LinkedHashSet<String>();
+      Set<String> names = new LinkedHashSet<String>();
+      targets(statementsContext, ids, names);
+      targets(predicatesContext, ids, names);
+      ids.add("UNKNOWN");
+      names.add("UNKNOWN");
+      for (String id : ids) {
+        for (String name : names) {
+          assertEquals(type + " " + id + " " + name,
+              findConformanceStatements(statementsContext, id, name),
+              index.conformanceStatements(type, id, name));
+          assertEquals(type + " " + id + " " + name, findPredicates(predicatesContext, id, name),
+              index.predicates(type, id, name));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIdAndNameMatchesInterleaved() {
+    List<Predicate> byIdAndName = index.predicates(ConstraintIndex.Type.GROUP,
+        "ORDER_OBSERVATION_FRN", "ORDER_OBSERVATION");
+    List<Predicate> byId =
+        index.predicates(ConstraintIndex.Type.GROUP, "ORDER_OBSERVATION_FRN", "UNKNOWN");
+    List<Predicate> byName =
+        index.predicates(ConstraintIndex.Type.GROUP, "UNKNOWN", "ORDER_OBSERVATION");
+    assertFalse(byId.isEmpty());
+    assertFalse(byName.isEmpty());
+    assertEquals(byId.size() + byName.size(), byIdAndName.size());
+    assertEquals(findPredicates(predicates.getGroups(), "ORDER_OBSERVATION_FRN", "ORDER_OBSERVATION"),
+        byIdAndName);
+  }
+
+  @Test
+  public void testNoConstraints() {
+    ConstraintIndex empty = new ConstraintIndex(null, null);
+    assertEquals(0, empty.predicates(ConstraintIndex.Type.SEGMENT, "OBX_GU", "OBX").size());
+    assertEquals(0, empty.conformanceStatements(ConstraintIndex.Type.SEGMENT, "OBX_GU", "OBX").size());
+  }
+
+  private Context context(Constraints constraints, ConstraintIndex.Type type) {
+    if (constraints == null) {
+      return null;
+    }
+    switch (type) {
+      case MESSAGE:
+        return constraints.getMessages();
+      case GROUP:
+        return constraints.getGroups();
+      case SEGMENT:
+        return constraints.getSegments();
+      default:
+        return constraints.getDatatypes();
+    }
+  }
+
+  private void targets(Context context, Set<String> ids, Set<String> names) {
+    if (context == null || context.getByNameOrByIDs() == null) {
+      return;
+    }
+    for (ByNameOrByID byNameOrByID : context.getByNameOrByIDs()) {
+      if (byNameOrByID instanceof ByID) {
+        ids.add(((ByID) byNameOrByID).getByID());
+      } else if (byNameOrByID instanceof ByName) {
+        names.add(((ByName) byNameOrByID).getByName());
+      }
+    }
+  }
+
+  /**
+   * The scan of the context the index replaces
+   */
+  private List<ConformanceStatement> findConformanceStatements(Context context, String id,
+      String name) {
+    List<ConformanceStatement> result = new ArrayList<ConformanceStatement>();
+    if (context == null || context.getByNameOrByIDs() == null) {
+      return result;
+    }
+    for (ByNameOrByID byNameOrByID : context.getByNameOrByIDs()) {
+      if (byNameOrByID instanceof ByID) {
+        ByID byID = (ByID) byNameOrByID;
+        if (byID.getByID().equals(id)) {
+          for (ConformanceStatement c : byID.getConformanceStatements()) {
+            result.add(c);
+          }
+        }
+      } else if (byNameOrByID instanceof ByName) {
+        ByName byName = (ByName) byNameOrByID;
+        if (byName.getByName().equals(name)) {
+          for (ConformanceStatement c : byName.getConformanceStatements()) {
+            result.add(c);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The scan of the context the index replaces
+   */
+  private List<Predicate> findPredicates(Context context, String id, String name) {
+    List<Predicate> result = new ArrayList<Predicate>();
+    if (context == null || context.getByNameOrByIDs() == null) {
+      return result;
+    }
+    for (ByNameOrByID byNameOrByID : context.getByNameOrByIDs()) {
+      if (byNameOrByID instanceof ByID) {
+        ByID byID = (ByID) byNameOrByID;
+        if (byID.getByID().equals(id)) {
+          for (Predicate p : byID.getPredicates()) {
+            result.add(p);
+          }
+        }
+      } else if (byNameOrByID instanceof ByName) {
+        ByName byName = (ByName) byNameOrByID;
+        if (byName.getByName().equals(name)) {
+          for (Predicate p : byName.getPredicates()) {
+            result.add(p);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,106 @@
+package gov.nist.hit.core.hl7v2.service.profile.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.domain.MessageHeader;
+import gov.nist.hit.core.hl7v2.domain.ProfileCandidate;
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.impl.ProfileIndexImpl;
+
+public class ProfileIndexImplTest {
+
+  private static final String ORU_R01 =
+      "<ConformanceProfile><Messages><Message ID=\"P1\" Type=\"ORU\" Event=\"R01\" StructID=\"ORU_R01\"/></Messages></ConformanceProfile>";
+
+  private static final String ADT_A01 =
+      "<ConformanceProfile><Messages><Message ID=\"P1\" Type=\"ADT\" Event=\"A01\" StructID=\"ADT_A01\"/></Messages></ConformanceProfile>";
+
+  /**
+   * Rows of (test context id, conformance profile id, source id) and the xml of each test
+   * context's conformance profile
+   */
+  private final List<Object[]> summaries = new ArrayList<Object[]>();
+  private final Map<Long, String> xmls = new HashMap<Long, String>();
+  private final AtomicInteger xmlLoads = new AtomicInteger();
+
+  private ProfileIndexImpl index;
+
+  @Before
+  public void setUp() {
+    index = new ProfileIndexImpl();
+    index.setRefreshMillis(0);
+    index.setTestContextRepository((HL7V2TestContextRepository) Proxy.newProxyInstance(
+        HL7V2TestContextRepository.class.getClassLoader(),
+        new Class<?>[] {HL7V2TestContextRepository.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("findConformanceProfileSummaries".equals(method.getName())) {
+              return new ArrayList<Object[]>(summaries);
+            }
+            if ("findConformanceProfileXmlByTestContextId".equals(method.getName())) {
+              xmlLoads.incrementAndGet();
+              return xmls.get(args[0]);
+            }
+            return null;
+          }
+        }));
+  }
+
+  @After
+  public void tearDown() {
+    index.shutdown();
+  }
+
+  private static MessageHeader header(String type, String event, String structureId) {
+    MessageHeader header = new MessageHeader();
+    header.setMessageType(type);
+    header.setEvent(event);
+    header.setStructureId(structureId);
+    return header;
+  }
+
+  @Test
+  public void testEditKeepingTheLengthRebuildsTheEntry() {
+    assertEquals(ORU_R01.length(), ADT_A01.length());
+    summaries.add(new Object[] {1L, 10L, "P1"});
+    xmls.put(1L, ORU_R01);
+    index.refresh();
+    assertEquals(1, index.findCandidates(header("ORU", "R01", "ORU_R01")).size());
+    assertTrue(index.findCandidates(header("ADT", "A01", "ADT_A01")).isEmpty());
+
+    xmls.put(1L, ADT_A01);
+    index.refresh();
+    assertTrue(index.findCandidates(header("ORU", "R01", "ORU_R01")).isEmpty());
+    List<ProfileCandidate> candidates = index.findCandidates(header("ADT", "A01", "ADT_A01"));
+    assertEquals(1, candidates.size());
+    assertEquals(Long.valueOf(1L), candidates.get(0).getTestContextId());
+    assertEquals(ProfileCandidate.Match.STRUCTURE, candidates.get(0).getMatch());
+  }
+
+  @Test
+  public void testSharedProfileIsLoadedOncePerRefresh() {
+    summaries.add(new Object[] {1L, 10L, "P1"});
+    summaries.add(new Object[] {2L, 10L, "P1"});
+    summaries.add(new Object[] {3L, 10L, "P1"});
+    xmls.put(1L, ORU_R01);
+    index.refresh();
+    assertEquals(1, xmlLoads.get());
+    assertEquals(3, index.size());
+    assertEquals(3, index.findCandidates(header("ORU", "R01", "ORU_R01")).size());
+  }
+
+}
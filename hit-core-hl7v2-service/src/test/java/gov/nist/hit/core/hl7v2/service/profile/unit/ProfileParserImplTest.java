@@ -2,13 +2,27 @@ package gov.nist.hit.core.hl7v2.service.profile.unit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import gov.nist.hit.core.domain.ProfileElement;
 import gov.nist.hit.core.domain.ProfileModel;
 import gov.nist.hit.core.hl7v2.service.impl.HL7V2ProfileParserImpl;
@@ -54,6 +68,183 @@ public class ProfileParserImplTest {
 
   }
 
+  // the LRI profile and constraints, loaded once for the tests below
+  private static String profile;
+  private static String constraints;
+
+  @BeforeClass
+  public static void loadLRIProfile() throws IOException {
+    profile = IOUtils
+        .toString(ProfileParserImplTest.class.getResourceAsStream("/profiles/1_1_2_Profile.xml"));
+    constraints = IOUtils.toString(
+        ProfileParserImplTest.class.getResourceAsStream("/constraints/1_1_2_Constraints.xml"));
+  }
+
+  @Test
+  public void testSharedDatatypes() throws ProfileParserException, IOException {
+    HL7V2ProfileParserImpl copying = new HL7V2ProfileParserImpl();
+    HL7V2ProfileParserImpl sharing = new HL7V2ProfileParserImpl();
+    sharing.setSharedDatatypes(true);
+    ProfileModel copied = copying.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    ProfileModel shared = sharing.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    assertEquals(copied.getDatatypes().keySet(), shared.getDatatypes().keySet());
+    int copiedCount = count(copied.getDatatypes().values());
+    int sharedCount = count(shared.getDatatypes().values());
+    assertTrue(sharedCount < copiedCount);
+    for (ProfileElement datatype : shared.getDatatypes().values()) {
+      for (ProfileElement component : datatype.getChildren()) {
+        assertTrue(component.getChildren() == null || component.getChildren().isEmpty());
+        assertTrue(shared.getDatatypes().containsKey(component.getDatatype()));
+      }
+    }
+  }
+
+  /**
+   * In shared mode each datatype and each of its components is serialized once, under datatypes,
+   * instead of once per component using it
+   */
+  @Test
+  public void testSharedDatatypesSerializedOnce() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    HL7V2ProfileParserImpl copying = new HL7V2ProfileParserImpl();
+    HL7V2ProfileParserImpl sharing = new HL7V2ProfileParserImpl();
+    sharing.setSharedDatatypes(true);
+    ProfileModel copied = copying.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    ProfileModel shared = sharing.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    byte[] copiedJson = mapper.writeValueAsBytes(copied);
+    byte[] sharedJson = mapper.writeValueAsBytes(shared);
+    JsonNode sharedTree = mapper.readTree(sharedJson);
+    assertEquals(shared.getDatatypes().size(), sharedTree.get("datatypes").size());
+    Map<String, Integer> sharedIds = new HashMap<String, Integer>();
+    elementIds(sharedTree, sharedIds);
+    Map<String, Integer> copiedIds = new HashMap<String, Integer>();
+    elementIds(mapper.readTree(copiedJson), copiedIds);
+    boolean copiedTwice = false;
+    for (ProfileElement datatype : shared.getDatatypes().values()) {
+      assertEquals(datatype.getId(), Integer.valueOf(1), sharedIds.get(datatype.getId()));
+      for (ProfileElement component : datatype.getChildren()) {
+        assertEquals(component.getId(), Integer.valueOf(1), sharedIds.get(component.getId()));
+        Integer copies = copiedIds.get(component.getId());
+        copiedTwice |= copies != null && copies > 1;
+      }
+    }
+    assertTrue(copiedTwice);
+    assertTrue(sharedJson.length < copiedJson.length);
+  }
+
+  @Test
+  public void testDeterministicIds() throws ProfileParserException, IOException {
+    HL7V2ProfileParserImpl parser = new HL7V2ProfileParserImpl();
+    ProfileModel first = parser.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    ProfileModel second = parser.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    assertEquals(ids(first.getMessage().getChildren()), ids(second.getMessage().getChildren()));
+    assertEquals(ids(first.getSegments().values()), ids(second.getSegments().values()));
+    assertEquals(ids(first.getDatatypes().values()), ids(second.getDatatypes().values()));
+
+    parser.setRandomIds(true);
+    ProfileModel random = parser.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    assertFalse(ids(first.getSegments().values()).equals(ids(random.getSegments().values())));
+  }
+
+  @Test
+  public void testParseAll() throws ProfileParserException, IOException {
+    HL7V2ProfileParserImpl parser = new HL7V2ProfileParserImpl();
+    List<String> messageIds =
+        Arrays.asList("ORU_R01:LRI_NG_FRN", "ORU_R01:LRI_GU_FRN", "ORU_R01:LRI_GU_FRU");
+    Map<String, ProfileModel> models = parser.parseAll(profile, messageIds, 2, constraints, null);
+    assertEquals(messageIds, new ArrayList<String>(models.keySet()));
+    ProfileModel single = parser.parse(profile, "ORU_R01:LRI_GU_FRN", constraints);
+    ProfileModel model = models.get("ORU_R01:LRI_GU_FRN");
+    assertEquals("ORU_R01:LRI_GU_FRN", model.getMessage().getId());
+    assertEquals(ids(single.getMessage().getChildren()), ids(model.getMessage().getChildren()));
+    assertEquals(ids(single.getDatatypes().values()), ids(model.getDatatypes().values()));
+  }
+
+  @Test
+  public void testConcurrentParses() throws Exception {
+    final HL7V2ProfileParserImpl parser = new HL7V2ProfileParserImpl();
+    List<String> messageIds =
+        Arrays.asList("ORU_R01:LRI_NG_FRN", "ORU_R01:LRI_GU_FRN", "ORU_R01:LRI_GU_FRU");
+    List<String> expected = new ArrayList<String>();
+    for (String messageId : messageIds) {
+      expected.add(signature(parser.parse(profile, messageId, constraints)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> futures = new ArrayList<Future<String>>();
+      for (int i = 0; i < 24; i++) {
+        final String messageId = messageIds.get(i % messageIds.size());
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return signature(parser.parse(profile, messageId, constraints));
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(expected.get(i % messageIds.size()), futures.get(i).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The ids, predicates and conformance statements of the elements of a model, in order
+   */
+  private String signature(ProfileModel model) {
+    StringBuilder signature = new StringBuilder(model.getMessage().getId());
+    signature(model.getMessage().getChildren(), signature);
+    signature(model.getSegments().values(), signature);
+    signature(model.getDatatypes().values(), signature);
+    return signature.toString();
+  }
 
+  private void signature(Collection<ProfileElement> elements, StringBuilder signature) {
+    if (elements != null) {
+      for (ProfileElement element : elements) {
+        signature.append('|').append(element.getId());
+        signature.append(':').append(element.getPredicates() != null ? element.getPredicates().size() : 0);
+        signature.append(':').append(element.getConformanceStatements() != null
+            ? element.getConformanceStatements().size() : 0);
+        signature(element.getChildren(), signature);
+      }
+    }
+  }
+
+  private List<String> ids(Collection<ProfileElement> elements) {
+    List<String> ids = new ArrayList<String>();
+    if (elements != null) {
+      for (ProfileElement element : elements) {
+        ids.add(element.getId());
+        ids.addAll(ids(element.getChildren()));
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Counts the serialized profile elements, the objects with an id and a type, by id
+   */
+  private void elementIds(JsonNode node, Map<String, Integer> ids) {
+    if (node.isObject() && node.hasNonNull("id") && node.has("type")) {
+      String id = node.get("id").asText();
+      Integer count = ids.get(id);
+      ids.put(id, count == null ? 1 : count + 1);
+    }
+    for (JsonNode child : node) {
+      elementIds(child, ids);
+    }
+  }
+
+  private int count(Collection<ProfileElement> elements) {
+    int count = 0;
+    if (elements != null) {
+      for (ProfileElement element : elements) {
+        count += 1 + count(element.getChildren());
+      }
+    }
+    return count;
+  }
 
 }
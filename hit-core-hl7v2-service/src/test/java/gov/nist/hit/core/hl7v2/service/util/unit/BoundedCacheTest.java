@@ -0,0 +1,72 @@
+package gov.nist.hit.core.hl7v2.service.util.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.service.util.BoundedCache;
+import gov.nist.hit.core.hl7v2.service.util.CacheStatistics;
+
+public class BoundedCacheTest {
+
+  private static class CountingLoader implements BoundedCache.Loader<String, String> {
+    AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public String load(String key) throws Exception {
+      calls.incrementAndGet();
+      return key.toUpperCase();
+    }
+  }
+
+  @Test
+  public void testHitsAndMisses() throws Exception {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 2, 0);
+    CountingLoader loader = new CountingLoader();
+    assertEquals("A", cache.get("a", loader));
+    assertEquals("A", cache.get("a", loader));
+    assertEquals(1, loader.calls.get());
+    CacheStatistics stats = cache.getStatistics();
+    assertEquals(1, stats.getHits());
+    assertEquals(1, stats.getMisses());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 2, 0);
+    CountingLoader loader = new CountingLoader();
+    cache.get("a", loader);
+    cache.get("b", loader);
+    cache.get("a", loader);
+    cache.get("c", loader);
+    assertNull(cache.getIfPresent("b"));
+    assertEquals("A", cache.getIfPresent("a"));
+    assertEquals(1, cache.getStatistics().getEvictions());
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() throws Exception {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 2, 0);
+    final AtomicInteger calls = new AtomicInteger();
+    BoundedCache.Loader<String, String> failing = new BoundedCache.Loader<String, String>() {
+      @Override
+      public String load(String key) throws Exception {
+        calls.incrementAndGet();
+        throw new IllegalStateException(key);
+      }
+    };
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.get("a", failing);
+      } catch (IllegalStateException e) {
+        assertEquals("a", e.getMessage());
+      }
+    }
+    assertEquals(2, calls.get());
+    assertEquals(0, cache.size());
+  }
+
+}
@@ -0,0 +1,137 @@
+package gov.nist.hit.core.hl7v2.service.validation.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.repo.HL7V2TestContextRepository;
+import gov.nist.hit.core.hl7v2.service.AsyncValidationLogWriter;
+import gov.nist.hit.core.hl7v2.service.AsyncValidationLogWriter.OverflowPolicy;
+import gov.nist.hit.core.service.ValidationLogService;
+
+public class AsyncValidationLogWriterTest {
+
+  /**
+   * Records the user id and the thread of every saved log, optionally holding the writer until
+   * released
+   */
+  private static class RecordingLogService implements InvocationHandler {
+    final List<Long> userIds = Collections.synchronizedList(new ArrayList<Long>());
+    final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch entered = new CountDownLatch(1);
+    volatile CountDownLatch release;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("generateAndSave".equals(method.getName())) {
+        entered.countDown();
+        if (release != null) {
+          release.await(10, TimeUnit.SECONDS);
+        }
+        userIds.add((Long) args[0]);
+        threads.add(Thread.currentThread().getName());
+      }
+      return null;
+    }
+  }
+
+  private static AsyncValidationLogWriter writer(RecordingLogService service, int capacity,
+      int batchSize, OverflowPolicy policy) {
+    ValidationLogService logService = (ValidationLogService) Proxy.newProxyInstance(
+        ValidationLogService.class.getClassLoader(), new Class<?>[] {ValidationLogService.class},
+        service);
+    HL7V2TestContextRepository repository = (HL7V2TestContextRepository) Proxy.newProxyInstance(
+        HL7V2TestContextRepository.class.getClassLoader(),
+        new Class<?>[] {HL7V2TestContextRepository.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+          }
+        });
+    return new AsyncValidationLogWriter(logService, repository, null, capacity, batchSize, policy,
+        1);
+  }
+
+  @Test
+  public void testQueuedRecordsAreFlushedOnShutdown() {
+    RecordingLogService service = new RecordingLogService();
+    AsyncValidationLogWriter writer = writer(service, 100, 10, OverflowPolicy.DROP);
+    for (long i = 0; i < 50; i++) {
+      writer.submit(i, 1L, null);
+    }
+    assertTrue(writer.shutdown(10000));
+    assertEquals(50, service.userIds.size());
+    assertEquals(50, writer.getStatistics().getWritten());
+    assertEquals(0, writer.getStatistics().getDropped());
+  }
+
+  @Test
+  public void testNoRecordLostUnderConcurrentSubmits() throws Exception {
+    RecordingLogService service = new RecordingLogService();
+    final AsyncValidationLogWriter writer = writer(service, 8, 4, OverflowPolicy.BLOCK);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final long base = t * 1000L;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (long i = 0; i < 200; i++) {
+            writer.submit(base + i, 1L, null);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(writer.shutdown(10000));
+    assertEquals(1600, service.userIds.size());
+    assertEquals(1600, new HashSet<Long>(service.userIds).size());
+    assertEquals(1600, writer.getStatistics().getWritten());
+  }
+
+  @Test
+  public void testRecordsAreDroppedWhenTheQueueIsFull() throws Exception {
+    RecordingLogService service = new RecordingLogService();
+    service.release = new CountDownLatch(1);
+    AsyncValidationLogWriter writer = writer(service, 2, 1, OverflowPolicy.DROP);
+    writer.submit(0L, 1L, null);
+    // the writer holds the first record, the queue takes two more
+    assertTrue(service.entered.await(10, TimeUnit.SECONDS));
+    for (long i = 1; i < 6; i++) {
+      writer.submit(i, 1L, null);
+    }
+    assertEquals(3, writer.getStatistics().getDropped());
+    assertEquals(2, writer.getStatistics().getQueueDepth());
+    service.release.countDown();
+    assertTrue(writer.shutdown(10000));
+    assertEquals(3, service.userIds.size());
+    assertEquals(6, writer.getStatistics().getSubmitted());
+    assertEquals(3, writer.getStatistics().getWritten());
+  }
+
+  @Test
+  public void testRecordsAfterShutdownAreWrittenOnTheCallerThread() {
+    RecordingLogService service = new RecordingLogService();
+    AsyncValidationLogWriter writer = writer(service, 10, 10, OverflowPolicy.DROP);
+    assertTrue(writer.shutdown(10000));
+    writer.submit(7L, 1L, null);
+    assertEquals(Collections.singletonList(7L), service.userIds);
+    assertEquals(Thread.currentThread().getName(), service.threads.get(0));
+    assertEquals(1, writer.getStatistics().getWritten());
+  }
+
+}
@@ -0,0 +1,211 @@
+package gov.nist.hit.core.hl7v2.service.validation.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import gov.nist.hit.core.hl7v2.service.ValidationExecutor;
+import gov.nist.hit.core.hl7v2.service.exception.ValidationRejectedException;
+import gov.nist.hit.core.hl7v2.service.exception.ValidationTimeoutException;
+import gov.nist.hit.core.service.exception.MessageValidationException;
+
+public class ValidationExecutorTest {
+
+  private ValidationExecutor executor;
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * A validation that holds its thread until the test releases it
+   */
+  private Callable<String> blocker(final CountDownLatch started) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        if (started != null) {
+          started.countDown();
+        }
+        release.await(10, TimeUnit.SECONDS);
+        return "released";
+      }
+    };
+  }
+
+  private static Callable<String> value(final String value) {
+    return new Callable<String>() {
+      @Override
+      public String call() {
+        return value;
+      }
+    };
+  }
+
+  /**
+   * Waits for every permit to be given back: the permit of a validation is released once its
+   * thread is done with it, just after its result is completed
+   */
+  private static void assertPermitsReleased(ValidationExecutor executor)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (executor.getStatistics().getAdmitted() != 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(0, executor.getStatistics().getAdmitted());
+  }
+
+  private static Throwable failure(CompletableFuture<?> result) throws InterruptedException {
+    try {
+      result.get(10, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (TimeoutException e) {
+      fail("the validation did not complete");
+    }
+    fail("the validation did not fail");
+    return null;
+  }
+
+  @Test
+  public void testPermitsAreReleasedAfterSuccess() throws Exception {
+    executor = new ValidationExecutor(2, 2);
+    assertEquals("a", executor.execute(value("a"), 1000));
+    assertEquals("b", executor.executeAsync(value("b"), 1000).get(10, TimeUnit.SECONDS));
+    assertEquals("c", executor.enqueue(value("c"), 1000, null).get(10, TimeUnit.SECONDS));
+    assertPermitsReleased(executor);
+    assertEquals(3, executor.getStatistics().getCompleted());
+  }
+
+  @Test
+  public void testPermitsAreReleasedAfterTimeout() throws Exception {
+    executor = new ValidationExecutor(2, 2);
+    try {
+      executor.execute(blocker(null), 50);
+      fail("the validation should have timed out");
+    } catch (ValidationTimeoutException e) {
+      // expected
+    }
+    assertTrue(failure(executor.executeAsync(blocker(null), 50)) instanceof ValidationTimeoutException);
+    assertPermitsReleased(executor);
+    assertEquals(2, executor.getStatistics().getTimedOut());
+  }
+
+  @Test
+  public void testSyncTimeoutExcludesTheTimeSpentInTheQueue() throws Exception {
+    executor = new ValidationExecutor(1, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    executor.executeAsync(blocker(started), 0);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(300);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        release.countDown();
+      }
+    }).start();
+    // queued for 300 ms behind the blocker, then runs well within its 200 ms
+    assertEquals("queued", executor.execute(value("queued"), 200));
+    assertEquals(0, executor.getStatistics().getTimedOut());
+    assertPermitsReleased(executor);
+  }
+
+  @Test
+  public void testPermitsAreReleasedAfterCancellation() throws Exception {
+    executor = new ValidationExecutor(1, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    executor.executeAsync(blocker(started), 0);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    final AtomicReference<Exception> thrown = new AtomicReference<Exception>();
+    Thread caller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          executor.execute(value("never"), 0);
+        } catch (Exception e) {
+          thrown.set(e);
+        }
+      }
+    });
+    caller.start();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (executor.getStatistics().getAdmitted() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    // the caller gives up while its validation waits in the queue
+    caller.interrupt();
+    caller.join(10000);
+    assertTrue(thrown.get() instanceof MessageValidationException);
+    release.countDown();
+    assertPermitsReleased(executor);
+  }
+
+  @Test
+  public void testRejectedWhenSaturated() throws Exception {
+    executor = new ValidationExecutor(1, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<String> running = executor.executeAsync(blocker(started), 0);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    CompletableFuture<String> queued = executor.executeAsync(value("queued"), 0);
+    assertTrue(failure(executor.executeAsync(value("rejected"), 0)) instanceof ValidationRejectedException);
+    try {
+      executor.execute(value("rejected"), 0);
+      fail("the validation should have been rejected");
+    } catch (ValidationRejectedException e) {
+      // expected
+    }
+    assertEquals(2, executor.getStatistics().getRejected());
+    release.countDown();
+    assertEquals("released", running.get(10, TimeUnit.SECONDS));
+    assertEquals("queued", queued.get(10, TimeUnit.SECONDS));
+    assertPermitsReleased(executor);
+  }
+
+  @Test
+  public void testPermitsAreReleasedOnShutdown() throws Exception {
+    executor = new ValidationExecutor(1, 2);
+    CountDownLatch started = new CountDownLatch(1);
+    final AtomicReference<Integer> finished = new AtomicReference<Integer>(0);
+    Runnable onFinish = new Runnable() {
+      @Override
+      public void run() {
+        synchronized (finished) {
+          finished.set(finished.get() + 1);
+        }
+      }
+    };
+    CompletableFuture<String> running = executor.enqueue(blocker(started), 0, onFinish);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    CompletableFuture<String> first = executor.enqueue(value("first"), 0, onFinish);
+    CompletableFuture<String> second = executor.executeAsync(value("second"), 0);
+    executor.shutdown();
+    assertTrue(failure(first) instanceof MessageValidationException);
+    assertTrue(failure(second) instanceof MessageValidationException);
+    // the running validation is interrupted
+    running.handle((r, e) -> r).get(10, TimeUnit.SECONDS);
+    assertPermitsReleased(executor);
+    assertEquals(Integer.valueOf(2), finished.get());
+  }
+
+}
@@ -0,0 +1,42 @@
+package gov.nist.hit.core.hl7v2.service.validation.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gov.nist.hit.core.hl7v2.service.ValidationReportFilter;
+
+public class ValidationReportFilterTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void testClassificationKeys() throws Exception {
+    String json = "{\"detections\":{\"Error\":{\"Length\":[{\"path\":\"PID-3\"},{\"path\":\"PID-5\"}],"
+        + "\"Usage\":[{\"path\":\"PID-7\"}]},\"Informational\":{\"Usage\":[{\"path\":\"MSH-1\"}]},"
+        + "\"Affirmative\":{\"Content\":[{\"path\":\"MSH-2\"}]}}}";
+    JsonNode root = mapper.readTree(ValidationReportFilter.errorsOnly(json, 2));
+    JsonNode detections = root.get("detections");
+    assertFalse(detections.has("Informational"));
+    assertFalse(detections.has("Affirmative"));
+    assertEquals(2, detections.get("Error").get("Length").size());
+    assertEquals(0, detections.get("Error").get("Usage").size());
+  }
+
+  @Test
+  public void testClassificationProperty() throws Exception {
+    String json = "{\"entries\":[{\"classification\":\"Error\"},{\"classification\":\"Informational\"},"
+        + "{\"classification\":\"Warning\"},{\"classification\":\"Error\"}]}";
+    JsonNode entries = mapper.readTree(ValidationReportFilter.errorsOnly(json, 0)).get("entries");
+    assertEquals(3, entries.size());
+    entries = mapper.readTree(ValidationReportFilter.errorsOnly(json, 1)).get("entries");
+    assertEquals(2, entries.size());
+    assertTrue("Warning".equals(entries.get(1).get("classification").asText()));
+  }
+
+}